@@ -0,0 +1,67 @@
+#!/usr/bin/perl -w
+
+use strict;
+use Getopt::Long qw(GetOptions);
+Getopt::Long::Configure qw(posix_default no_ignore_case);
+
+
+sub usage{
+        my $msg=shift;
+	print STDERR $msg."\n";
+
+	print STDERR<<usage_ends;
+
+Script, which merges unsafe reports of several processes
+(see cpa.usagestatistics.sharding options) into one report
+
+Usage: 
+        merge-unsafe-rawdata.pl --output=unsafe_rawdata shard0/unsafe_rawdata shard1/unsafe_rawdata ...
+        
+Options:
+		--output, --o 	- merged unsafe_rawdata
+
+usage_ends
+        die;
+}
+
+# The report starts with the numbers of unsafes:
+# global, global pointers, local, local pointers, fields, field pointers and the total number
+my $counters_size = 7;
+
+my $output;
+
+GetOptions(
+        'output|o=s'=>\$output,
+        ) or usage("Unrecognized options!");
+
+defined($output) or usage("Output file is not specified");
+@ARGV or usage("No unsafe_rawdata to merge");
+
+my @counters = (0) x $counters_size;
+my @bodies;
+
+foreach my $file (@ARGV) {
+	-e $file or usage("Unsafe_rawdata $file was't found");
+	my $IN;
+	open($IN, "<", $file) or die("$!");
+	for (my $i = 0; $i < $counters_size; $i++) {
+		my $line = <$IN>;
+		defined($line) && $line =~ /^(\d+)$/ or die("Wrong format of counters in $file\n");
+		$counters[$i] += $1;
+	}
+	# The identifiers are partitioned between shards, so the unsafes are just concatenated
+	local $/;
+	my $body = <$IN>;
+	push(@bodies, $body) if defined($body);
+	close($IN);
+}
+
+my $OUT;
+open($OUT, ">", $output) or die("$!");
+foreach my $counter (@counters) {
+	print $OUT "$counter\n";
+}
+foreach my $body (@bodies) {
+	print $OUT $body;
+}
+close($OUT);
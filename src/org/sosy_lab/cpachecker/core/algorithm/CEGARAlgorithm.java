@@ -54,6 +54,7 @@ import org.sosy_lab.cpachecker.cpa.value.refiner.UnsoundRefiner;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.exceptions.InvalidComponentException;
 import org.sosy_lab.cpachecker.exceptions.RefinementFailedException;
+import org.sosy_lab.cpachecker.util.CPAs;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
@@ -61,7 +62,7 @@ import com.google.common.base.Throwables;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 @Options(prefix="cegar")
-public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
+public class CEGARAlgorithm implements Algorithm, StatisticsProvider, AutoCloseable {
 
   private static class CEGARStatistics implements Statistics {
 
@@ -328,4 +329,8 @@ public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
     pStatsCollection.add(stats);
   }
 
+  @Override
+  public void close() {
+    CPAs.closeIfPossible(mRefiner, logger);
+  }
 }
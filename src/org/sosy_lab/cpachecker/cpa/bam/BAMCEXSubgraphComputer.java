@@ -211,8 +211,15 @@ public class BAMCEXSubgraphComputer {
     assert reachedSet.contains(reducedTarget) :
       "reduced state '" + reducedTarget + "' is not part of reachedset with root '" + reachedSet.getFirstState() + "'";
 
-    // we found the target; now construct a subtree in the ARG starting with targetARGElement
-    final BackwardARGState result = computeCounterexampleSubgraph(reducedTarget, new ARGReachedSet(reachedSet), newTreeTarget);
+    final BackwardARGState result;
+    if (data.bamCache.isRestored(reachedSet)) {
+      // the block was restored from the summary store without its inner states, so we have to compute it again
+      logger.log(Level.FINE, "Target state is reached through a block from the summary store. Recomputing it.");
+      result = DUMMY_STATE_FOR_MISSING_BLOCK;
+    } else {
+      // we found the target; now construct a subtree in the ARG starting with targetARGElement
+      result = computeCounterexampleSubgraph(reducedTarget, new ARGReachedSet(reachedSet), newTreeTarget);
+    }
     if (result == DUMMY_STATE_FOR_MISSING_BLOCK) {
       //enforce recomputation to update cached subtree
       logger.log(Level.FINE,
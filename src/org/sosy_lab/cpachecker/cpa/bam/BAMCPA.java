@@ -71,7 +71,7 @@ import com.google.common.base.Preconditions;
 
 
 @Options(prefix = "cpa.bam")
-public class BAMCPA extends AbstractSingleWrapperCPA implements StatisticsProvider, ProofChecker {
+public class BAMCPA extends AbstractSingleWrapperCPA implements StatisticsProvider, ProofChecker, AutoCloseable {
 
   public static CPAFactory factory() {
     return AutomaticCPAFactory.forType(BAMCPA.class);
@@ -130,7 +130,8 @@ public class BAMCPA extends AbstractSingleWrapperCPA implements StatisticsProvid
       this.wrappedProofChecker = null;
     }
     reducer = new TimedReducer(wrappedReducer);
-    final BAMCache cache = new BAMCache(config, reducer, logger);
+    final BAMCache cache = new BAMCache(config, reducer, pReachedSetFactory, logger);
+    cache.checkSummaryStoreSupport(pCpa);
     data = new BAMDataManager(cache, pReachedSetFactory, pLogger);
 
     if (handleRecursiveProcedures) {
@@ -262,4 +263,9 @@ public class BAMCPA extends AbstractSingleWrapperCPA implements StatisticsProvid
   boolean doPrecisionRefinementForAllStates() {
     return doPrecisionRefinementForAllStates;
   }
+
+  @Override
+  public void close() throws Exception {
+    data.bamCache.close();
+  }
 }
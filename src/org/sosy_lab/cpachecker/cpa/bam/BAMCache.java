@@ -25,30 +25,52 @@ package org.sosy_lab.cpachecker.cpa.bam;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.cpachecker.util.Pair;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.io.Path;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cfa.blocks.Block;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
 import org.sosy_lab.cpachecker.core.interfaces.Reducer;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.ReachedSetFactory;
 import org.sosy_lab.cpachecker.cpa.arg.ARGState;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+import com.google.common.hash.HashCode;
 
 @Options(prefix = "cpa.bam")
-public class BAMCache {
+public class BAMCache implements AutoCloseable {
 
   @Option(secure=true, description = "if enabled, cache queries also consider blocks with non-matching precision for reuse.")
   private boolean aggressiveCaching = true;
@@ -56,6 +78,31 @@ public class BAMCache {
   @Option(secure=true, description = "if enabled, the reached set cache is analysed for each cache miss to find the cause of the miss.")
   boolean gatherCacheMissStatistics = false;
 
+  @Option(secure=true, description = "maximal number of finished blocks in the cache, 0 means unbounded. "
+      + "If the bound is exceeded, some finished blocks are evicted and recomputed on demand. "
+      + "Only the blocks, which are not used by the current ARG, are evicted, "
+      + "e.g. the blocks kept after a refinement.")
+  private int maxCacheSize = 0;
+
+  @Option(secure=true, description = "which finished block is evicted, if the cache is full: "
+      + "LRU - the least recently used one, COST - the one, which was the cheapest to compute")
+  private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+  @Option(secure=true, name="summaryStore",
+      description = "File with the return states of finished blocks, which are reused by later runs. "
+      + "The file is extended with new blocks and may be shared by concurrent processes. "
+      + "It is supported only for the CPAs of Lockator and predicate analysis. "
+      + "A block is identified by its function names and edges, so the file should be deleted, "
+      + "if the program is changed outside of the blocks, e.g. types or global declarations. "
+      + "A stored block is reused only if its CFA nodes have the same numbers, otherwise it is stored again.")
+  @FileOption(FileOption.Type.OPTIONAL_INPUT_FILE)
+  private @Nullable Path summaryStoreFile = null;
+
+  public static enum EvictionPolicy {
+    LRU,
+    COST
+  }
+
   final Timer hashingTimer = new Timer();
   final Timer equalsTimer = new Timer();
   final Timer searchingTimer = new Timer();
@@ -68,21 +115,83 @@ public class BAMCache {
   int precisionCausedMisses = 0;
   int noSimilarCausedMisses = 0;
 
+  int evictedBlocks = 0;
+  int restoredBlocks = 0;
+  int storedBlocks = 0;
+
   // we use LinkedHashMaps to avoid non-determinism
   private final Map<AbstractStateHash, ReachedSet> preciseReachedCache = new LinkedHashMap<>();
   private final Map<AbstractStateHash, ReachedSet> unpreciseReachedCache = new HashMap<>();
   private final Map<AbstractStateHash, Collection<AbstractState>> returnCache = new HashMap<>();
   private final Map<AbstractStateHash, ARGState> blockARGCache = new HashMap<>();
 
+  //Only for bounded cache: finished blocks with the time spent to compute them (in ms)
+  //and the number of the last access to them
+  private final Map<AbstractStateHash, Long> computationCosts = new HashMap<>();
+  private final Map<AbstractStateHash, Long> lastAccesses = new HashMap<>();
+  private long accessCounter = 0;
+  private final Map<ReachedSet, AbstractStateHash> reachedToHash = new HashMap<>();
+  /* Reached sets, which are analyzed now or are referenced by the states of the current ARG.
+   * Evicting them frees nothing, because they are still used, so they are not evicted.
+   */
+  private final Multiset<ReachedSet> analyzedReachedSets = HashMultiset.create();
+  private final Multiset<ReachedSet> referencedReachedSets = HashMultiset.create();
+  //Finished blocks, which may be evicted, the first one is evicted at first
+  private final NavigableSet<AbstractStateHash> evictableBlocks;
+  //Reached sets of evicted blocks, the transfer relation removes its references to them
+  private final List<ReachedSet> evictedReachedSets = new ArrayList<>();
+
+  //Reached sets restored from the summary store with their keys in the store
+  private final Map<ReachedSet, HashCode> restoredReachedSets = new HashMap<>();
+  //Keys in the summary store of the missed blocks, which are computed now
+  private final Map<AbstractStateHash, HashCode> summaryKeys = new HashMap<>();
+
+  private final Comparator<AbstractStateHash> byLastAccess = new Comparator<AbstractStateHash>() {
+    @Override
+    public int compare(AbstractStateHash pHash1, AbstractStateHash pHash2) {
+      return Long.compare(lastAccesses.get(pHash1), lastAccesses.get(pHash2));
+    }
+  };
+
+  private final Comparator<AbstractStateHash> byCost = new Comparator<AbstractStateHash>() {
+    @Override
+    public int compare(AbstractStateHash pHash1, AbstractStateHash pHash2) {
+      int result = Long.compare(computationCosts.get(pHash1), computationCosts.get(pHash2));
+      return result != 0 ? result : byLastAccess.compare(pHash1, pHash2);
+    }
+  };
+
   private ARGState lastAnalyzedBlock = null;
   private final Reducer reducer;
+  private final ReachedSetFactory reachedSetFactory;
+  private final @Nullable BAMSummaryStore summaryStore;
 
   private final LogManager logger;
 
-  public BAMCache(Configuration config, Reducer reducer, LogManager logger) throws InvalidConfigurationException {
+  public BAMCache(Configuration config, Reducer reducer, ReachedSetFactory reachedSetFactory, LogManager logger)
+      throws InvalidConfigurationException {
     config.inject(this);
     this.reducer = reducer;
+    this.reachedSetFactory = reachedSetFactory;
     this.logger = logger;
+    evictableBlocks = new TreeSet<>(evictionPolicy == EvictionPolicy.COST ? byCost : byLastAccess);
+
+    BAMSummaryStore store = null;
+    if (summaryStoreFile != null) {
+      try {
+        store = new BAMSummaryStore(summaryStoreFile, config, logger);
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not open the summary store of blocks");
+      }
+    }
+    summaryStore = store;
+  }
+
+  /** Checks, that the states of the analysis can be stored, if the summary store is used. */
+  void checkSummaryStoreSupport(ConfigurableProgramAnalysis pCpa) throws InvalidConfigurationException {
+    if (summaryStore != null) {
+      BAMSummaryStore.checkSupport(pCpa);
+    }
   }
 
   public boolean doesAggressiveCaching() {
@@ -101,16 +210,125 @@ public class BAMCache {
     AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
     assert !preciseReachedCache.containsKey(hash);
     preciseReachedCache.put(hash, item);
+    if (maxCacheSize > 0) {
+      reachedToHash.put(item, hash);
+    }
   }
 
   public void put(AbstractState stateKey, Precision precisionKey, Block context, Collection<AbstractState> item,
-                   ARGState rootOfBlock) {
+                   ARGState rootOfBlock, TimeSpan computationTime) {
     AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
     assert preciseReachedCache.get(hash) != null : "key not found in cache";
     assert allStatesContainedInReachedSet(item, preciseReachedCache.get(hash)) : "output-states must be in reached-set";
     returnCache.put(hash, item);
     blockARGCache.put(hash, rootOfBlock);
     setLastAnalyzedBlock(hash);
+    if (maxCacheSize > 0) {
+      removeFromEvictableBlocks(hash);
+      Long cost = computationCosts.get(hash);
+      computationCosts.put(hash, (cost == null ? 0 : cost) + computationTime.asMillis());
+      lastAccesses.put(hash, accessCounter++);
+      addIfEvictable(hash);
+      evictIfNecessary();
+    }
+  }
+
+  /** The block is not evicted until {@link #finishBlockAnalysis(ReachedSet)} is called. */
+  void startBlockAnalysis(ReachedSet reached) {
+    if (maxCacheSize > 0) {
+      analyzedReachedSets.add(reached);
+      AbstractStateHash hash = reachedToHash.get(reached);
+      if (hash != null) {
+        removeFromEvictableBlocks(hash);
+      }
+    }
+  }
+
+  void finishBlockAnalysis(ReachedSet reached) {
+    if (maxCacheSize > 0 && analyzedReachedSets.remove(reached)) {
+      AbstractStateHash hash = reachedToHash.get(reached);
+      if (hash != null) {
+        addIfEvictable(hash);
+      }
+    }
+  }
+
+  /** The reached set is used by a state of the current ARG, it is not evicted until the reference is removed. */
+  void addReference(ReachedSet reached) {
+    if (maxCacheSize > 0) {
+      referencedReachedSets.add(reached);
+      AbstractStateHash hash = reachedToHash.get(reached);
+      if (hash != null) {
+        removeFromEvictableBlocks(hash);
+      }
+    }
+  }
+
+  void removeReference(ReachedSet reached) {
+    if (maxCacheSize > 0 && referencedReachedSets.remove(reached)) {
+      AbstractStateHash hash = reachedToHash.get(reached);
+      if (hash != null) {
+        addIfEvictable(hash);
+      }
+    }
+  }
+
+  void clearReferences() {
+    if (maxCacheSize > 0) {
+      referencedReachedSets.clear();
+      for (AbstractStateHash hash : computationCosts.keySet()) {
+        addIfEvictable(hash);
+      }
+    }
+  }
+
+  /** Returns the reached sets of the blocks evicted since the last call. */
+  List<ReachedSet> pollEvictedReachedSets() {
+    List<ReachedSet> result = ImmutableList.copyOf(evictedReachedSets);
+    evictedReachedSets.clear();
+    return result;
+  }
+
+  private void addIfEvictable(AbstractStateHash hash) {
+    ReachedSet reached = preciseReachedCache.get(hash);
+    if (computationCosts.containsKey(hash) && reached != null
+        && !analyzedReachedSets.contains(reached) && !referencedReachedSets.contains(reached)) {
+      evictableBlocks.add(hash);
+    }
+  }
+
+  /** Should be called before the cost or the last access of the block is changed. */
+  private void removeFromEvictableBlocks(AbstractStateHash hash) {
+    //the comparator can compare only finished blocks
+    if (computationCosts.containsKey(hash)) {
+      evictableBlocks.remove(hash);
+    }
+  }
+
+  /** The block is not finished anymore. */
+  private void removeFinishedBlock(AbstractStateHash hash) {
+    removeFromEvictableBlocks(hash);
+    computationCosts.remove(hash);
+    lastAccesses.remove(hash);
+  }
+
+  private void evictIfNecessary() {
+    while (computationCosts.size() > maxCacheSize && !evictableBlocks.isEmpty()) {
+      evict(evictableBlocks.first());
+    }
+  }
+
+  private void evict(AbstractStateHash hash) {
+    logger.log(Level.FINEST, "Evict block from cache", hash);
+    ReachedSet reached = preciseReachedCache.remove(hash);
+    removeFinishedBlock(hash);
+    returnCache.remove(hash);
+    blockARGCache.remove(hash);
+    reachedToHash.remove(reached);
+    unpreciseReachedCache.values().removeAll(Collections.singleton(reached));
+    restoredReachedSets.remove(reached);
+    evictedReachedSets.add(reached);
+    evictedBlocks++;
   }
 
   private boolean allStatesContainedInReachedSet(Collection<AbstractState> pElements, ReachedSet reached) {
@@ -121,7 +339,25 @@ public class BAMCache {
   }
 
   public void removeReturnEntry(AbstractState stateKey, Precision precisionKey, Block context) {
-    returnCache.remove(getHashCode(stateKey, precisionKey, context));
+    AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
+    removeRestoredBlock(hash);
+    returnCache.remove(hash);
+    removeFinishedBlock(hash);
+  }
+
+  /**
+   * A restored block has no inner states, so it can not be analyzed further.
+   * It is removed completely and recomputed, the summary store is not used for it anymore.
+   */
+  private void removeRestoredBlock(AbstractStateHash hash) {
+    ReachedSet reached = preciseReachedCache.get(hash);
+    HashCode key = reached == null ? null : restoredReachedSets.remove(reached);
+    if (key != null) {
+      summaryStore.reject(key);
+      preciseReachedCache.remove(hash);
+      reachedToHash.remove(reached);
+      unpreciseReachedCache.values().removeAll(Collections.singleton(reached));
+    }
   }
 
   public void removeBlockEntry(AbstractState stateKey, Precision precisionKey, Block context) {
@@ -130,9 +366,72 @@ public class BAMCache {
 
   public void removeFromAllCaches(AbstractState stateKey, Precision precisionKey, Block context) {
     AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
+    removeFinishedBlock(hash);
     returnCache.remove(hash);
     blockARGCache.remove(hash);
-    preciseReachedCache.remove(hash);
+    summaryKeys.remove(hash);
+    ReachedSet reached = preciseReachedCache.remove(hash);
+    if (reached != null) {
+      reachedToHash.remove(reached);
+      restoredReachedSets.remove(reached);
+    }
+  }
+
+  /**
+   * Restores the block from the summary store of earlier runs and puts it into the cache.
+   * The restored reached set contains only the initial state and the return states,
+   * so it can not be used to compute a counterexample. The block is recomputed in this case.
+   * Both members of the returned Pair are NULL, if the block is not stored.
+   */
+  public Pair<ReachedSet, Collection<AbstractState>> restore(AbstractState stateKey, Precision precisionKey,
+      Block context) {
+    HashCode key = summaryStore == null ? null : summaryStore.computeKey(stateKey, precisionKey, context);
+    List<AbstractState> storedStates = key == null ? null : summaryStore.load(key, context);
+    if (storedStates == null) {
+      if (key != null) {
+        //the block is computed now, its key is used to store it
+        summaryKeys.put(getHashCode(stateKey, precisionKey, context), key);
+      }
+      return Pair.of(null, null);
+    }
+
+    ReachedSet reached = reachedSetFactory.create();
+    reached.add(stateKey, precisionKey);
+    reached.popFromWaitlist();
+    List<AbstractState> returnStates = new ArrayList<>(storedStates.size());
+    for (AbstractState state : storedStates) {
+      ARGState returnState = new ARGState(state, null);
+      reached.add(returnState, precisionKey);
+      reached.removeOnlyFromWaitlist(returnState);
+      returnStates.add(returnState);
+    }
+    logger.log(Level.FINEST, "Restored block from summary store with root", stateKey);
+    put(stateKey, precisionKey, context, reached);
+    put(stateKey, precisionKey, context, returnStates, null, TimeSpan.empty());
+    restoredReachedSets.put(reached, key);
+    restoredBlocks++;
+    return Pair.<ReachedSet, Collection<AbstractState>>of(reached, returnStates);
+  }
+
+  /** Writes the return states of the finished block to the summary store, if it is used. */
+  public void store(AbstractState stateKey, Precision precisionKey, Block context,
+      Collection<AbstractState> returnStates) {
+    if (summaryStore == null) {
+      return;
+    }
+    HashCode key = summaryKeys.remove(getHashCode(stateKey, precisionKey, context));
+    if (key == null) {
+      //the block was started by a partial cache hit
+      key = summaryStore.computeKey(stateKey, precisionKey, context);
+    }
+    if (key != null && summaryStore.store(key, context, returnStates)) {
+      storedBlocks++;
+    }
+  }
+
+  /** Returns true, if the reached set was restored from the summary store and contains no inner states. */
+  public boolean isRestored(ReachedSet reached) {
+    return restoredReachedSets.containsKey(reached);
   }
 
   /** This function returns a Pair of the reached-set and the returnStates for the given keys.
@@ -140,7 +439,9 @@ public class BAMCache {
    * For a partial cache hit we return the partly computed reached-set and NULL as returnStates. */
   public Pair<ReachedSet, Collection<AbstractState>> get(final AbstractState stateKey, final Precision precisionKey, final Block context) {
 
-    final Pair<ReachedSet, Collection<AbstractState>> pair = get0(stateKey, precisionKey, context);
+    //the key is computed only once, as reducing the state to its hash may be expensive
+    final AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
+    final Pair<ReachedSet, Collection<AbstractState>> pair = get0(hash);
     Preconditions.checkNotNull(pair);
 
     // get some statistics
@@ -155,7 +456,7 @@ public class BAMCache {
     } else if (returnStates == null) {
       cacheMisses++;
       if (gatherCacheMissStatistics) {
-        findCacheMissCause(stateKey, precisionKey, context);
+        findCacheMissCause(hash, stateKey, precisionKey, context);
       }
     } else {
       throw new AssertionError("invalid return-value for BAMCache.get(): " + pair);
@@ -164,12 +465,18 @@ public class BAMCache {
     return pair;
   }
 
-  private Pair<ReachedSet, Collection<AbstractState>> get0(final AbstractState stateKey, final Precision precisionKey, final Block context) {
-    AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
-
+  private Pair<ReachedSet, Collection<AbstractState>> get0(final AbstractStateHash hash) {
     ReachedSet result = preciseReachedCache.get(hash);
     if (result != null) {
       setLastAnalyzedBlock(hash);
+      if (maxCacheSize > 0 && computationCosts.containsKey(hash)) {
+        //the block is the most recently used one now
+        boolean evictable = evictableBlocks.remove(hash);
+        lastAccesses.put(hash, accessCounter++);
+        if (evictable) {
+          evictableBlocks.add(hash);
+        }
+      }
       logger.log(Level.FINEST, "CACHE_ACCESS: precise entry");
       return Pair.of(result, returnCache.get(hash));
     }
@@ -237,8 +544,8 @@ public class BAMCache {
     }
   }
 
-  private void findCacheMissCause(AbstractState pStateKey, Precision pPrecisionKey, Block pContext) {
-    AbstractStateHash searchKey = getHashCode(pStateKey, pPrecisionKey, pContext);
+  private void findCacheMissCause(AbstractStateHash searchKey, AbstractState pStateKey, Precision pPrecisionKey,
+                                  Block pContext) {
     for (AbstractStateHash cacheKey : preciseReachedCache.keySet()) {
       assert !searchKey.equals(cacheKey);
       //searchKey != cacheKey, check whether it is the same if we ignore the precision
@@ -262,6 +569,47 @@ public class BAMCache {
     unpreciseReachedCache.clear();
     returnCache.clear();
     blockARGCache.clear();
+    evictableBlocks.clear();
+    computationCosts.clear();
+    lastAccesses.clear();
+    reachedToHash.clear();
+    analyzedReachedSets.clear();
+    evictedReachedSets.clear();
+    restoredReachedSets.clear();
+    summaryKeys.clear();
+  }
+
+  /**
+   * Removes all cached blocks, which contain at least one of the given nodes.
+   * All other entries are kept and may be reused by the next analysis.
+   */
+  public void removeBlocksContaining(Set<CFANode> nodes) {
+    int removed = 0;
+    //the evictable blocks are removed at first, as they are compared by the costs
+    removeBlocksContaining(evictableBlocks, nodes);
+    removed += removeBlocksContaining(preciseReachedCache.keySet(), nodes);
+    removed += removeBlocksContaining(unpreciseReachedCache.keySet(), nodes);
+    removeBlocksContaining(returnCache.keySet(), nodes);
+    removeBlocksContaining(blockARGCache.keySet(), nodes);
+    removeBlocksContaining(computationCosts.keySet(), nodes);
+    removeBlocksContaining(lastAccesses.keySet(), nodes);
+    removeBlocksContaining(reachedToHash.values(), nodes);
+    removeBlocksContaining(summaryKeys.keySet(), nodes);
+    restoredReachedSets.keySet().retainAll(new HashSet<>(preciseReachedCache.values()));
+    analyzedReachedSets.clear();
+    logger.log(Level.FINE, "Removed", removed, "cached blocks, kept", preciseReachedCache.size());
+  }
+
+  private int removeBlocksContaining(Collection<AbstractStateHash> cache, Set<CFANode> nodes) {
+    int removed = 0;
+    Iterator<AbstractStateHash> iterator = cache.iterator();
+    while (iterator.hasNext()) {
+      if (!Collections.disjoint(iterator.next().context.getNodes(), nodes)) {
+        iterator.remove();
+        removed++;
+      }
+    }
+    return removed;
   }
 
   public boolean containsPreciseKey(AbstractState stateKey, Precision precisionKey, Block context) {
@@ -274,8 +622,13 @@ public class BAMCache {
     AbstractStateHash hash = getHashCode(stateKey, precisionKey, context);
     ReachedSet reachedSet = preciseReachedCache.get(hash);
     if (reachedSet != null) {
+      removeFinishedBlock(hash);
       preciseReachedCache.remove(hash);
-      preciseReachedCache.put(getHashCode(stateKey, newPrecisionKey, context), reachedSet);
+      AbstractStateHash newHash = getHashCode(stateKey, newPrecisionKey, context);
+      preciseReachedCache.put(newHash, reachedSet);
+      if (maxCacheSize > 0) {
+        reachedToHash.put(reachedSet, newHash);
+      }
     }
   }
 
@@ -283,12 +636,22 @@ public class BAMCache {
     return preciseReachedCache.values();
   }
 
+  @Override
+  public void close() throws IOException {
+    if (summaryStore != null) {
+      summaryStore.close();
+    }
+  }
+
   private class AbstractStateHash {
 
     private final Object wrappedHash;
     private final Block context;
     private final AbstractState stateKey;
     private final Precision precisionKey;
+    //the hash of wrappedHash is cached, as the key is used in several maps
+    private int hash;
+    private boolean hashComputed = false;
 
     public AbstractStateHash(AbstractState pStateKey, Precision pPrecisionKey, Block pContext) {
       wrappedHash = reducer.getHashCodeForState(pStateKey, pPrecisionKey);
@@ -319,12 +682,16 @@ public class BAMCache {
 
     @Override
     public int hashCode() {
-      hashingTimer.start();
-      try {
-        return wrappedHash.hashCode() * 17 + context.hashCode();
-      } finally {
-        hashingTimer.stop();
+      if (!hashComputed) {
+        hashingTimer.start();
+        try {
+          hash = wrappedHash.hashCode() * 17 + context.hashCode();
+          hashComputed = true;
+        } finally {
+          hashingTimer.stop();
+        }
       }
+      return hash;
     }
 
     @Override
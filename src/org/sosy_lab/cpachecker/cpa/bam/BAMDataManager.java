@@ -25,9 +25,11 @@ package org.sosy_lab.cpachecker.cpa.bam;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.cfa.blocks.Block;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
@@ -87,12 +89,39 @@ public class BAMDataManager {
   /** unused? */
   void clearCaches() {
     bamCache.clear();
+    clearExpandedStates();
+  }
+
+  /** Clears all caches, but keeps the cached blocks, which contain none of the changed nodes. */
+  void clearCaches(Set<CFANode> changedNodes) {
+    bamCache.removeBlocksContaining(changedNodes);
+    clearExpandedStates();
+  }
+
+  private void clearExpandedStates() {
     initialStateToReachedSet.clear();
+    bamCache.clearReferences();
     expandedStateToBlock.clear();
     expandedStateToExpandedPrecision.clear();
     expandedStateToReducedState.clear();
   }
 
+  /** The cache does not evict the reached sets, which are used by the initial states. */
+  void registerInitialState(AbstractState initialState, ReachedSet reached) {
+    ReachedSet previous = initialStateToReachedSet.put(initialState, reached);
+    if (previous != null) {
+      bamCache.removeReference(previous);
+    }
+    bamCache.addReference(reached);
+  }
+
+  void unregisterInitialState(AbstractState initialState) {
+    ReachedSet previous = initialStateToReachedSet.remove(initialState);
+    if (previous != null) {
+      bamCache.removeReference(previous);
+    }
+  }
+
   ReachedSet createInitialReachedSet(AbstractState initialState, Precision initialPredicatePrecision) {
     ReachedSet reached = reachedSetFactory.create();
     reached.add(initialState, initialPredicatePrecision);
@@ -0,0 +1,382 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.bam;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.cfa.blocks.Block;
+import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractWrapperState;
+import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.cpa.arg.ARGCPA;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+import org.sosy_lab.cpachecker.cpa.callstack.CallstackCPA;
+import org.sosy_lab.cpachecker.cpa.callstack.CallstackState;
+import org.sosy_lab.cpachecker.cpa.composite.CompositeCPA;
+import org.sosy_lab.cpachecker.cpa.functionpointer.FunctionPointerCPA;
+import org.sosy_lab.cpachecker.cpa.location.LocationCPA;
+import org.sosy_lab.cpachecker.cpa.location.LocationState;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsCPA;
+import org.sosy_lab.cpachecker.cpa.predicate.PredicateCPA;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsCPA;
+import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.CFAUtils;
+import org.sosy_lab.cpachecker.util.CPAs;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Table;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Store of the return states of finished blocks, which is kept on disk and reused by later runs.
+ *
+ * A block summary is identified by the SHA-256 hash of the configuration, of the content of the block,
+ * of the reduced initial state and of the precision. The content of the block is described
+ * by the function names and the edge texts, the nodes are numbered by a traversal from the call nodes,
+ * so the key does not depend on the CFA node numbers.
+ * The stored states still refer to the nodes by their numbers, as in the proofs of PCC,
+ * so each record contains a fingerprint of the node numbers of the block. A record is used only
+ * if the numbers are the same in the current CFA, otherwise the block is recomputed
+ * and stored again under the same key.
+ *
+ * The file is only appended, each record contains the key, the fingerprint, the length of the states
+ * and the serialized states. Records are appended under a file lock,
+ * so several processes may share the same file.
+ * The records, which were written before the store was opened, are read from a memory-mapped buffer.
+ */
+final class BAMSummaryStore implements AutoCloseable {
+
+  private static final int KEY_LENGTH = 32;
+  private static final int HEADER_LENGTH = KEY_LENGTH + 8 + 4;
+
+  //The CPAs, which states have a serial form, that does not depend on the current analysis
+  private static final ImmutableList<Class<? extends ConfigurableProgramAnalysis>> SUPPORTED_CPAS =
+      ImmutableList.of(ARGCPA.class, CompositeCPA.class, LocationCPA.class, CallstackCPA.class,
+          PredicateCPA.class, FunctionPointerCPA.class, LockStatisticsCPA.class, UsageStatisticsCPA.class);
+
+  private final LogManager logger;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final HashCode configurationHash;
+
+  //the position of the record in the buffer for each stored key and fingerprint of node numbers
+  private final Table<HashCode, Long, Integer> records = HashBasedTable.create();
+  private final SetMultimap<HashCode, Long> storedRecords = HashMultimap.create();
+  private final Set<HashCode> rejectedKeys = new HashSet<>();
+  private final Map<Block, BlockNumbering> blockNumberings = new HashMap<>();
+
+  BAMSummaryStore(Path pFile, Configuration pConfig, LogManager pLogger) throws IOException {
+    logger = pLogger;
+    configurationHash = Hashing.sha256().hashString(pConfig.asPropertiesString(), UTF_8);
+    channel = FileChannel.open(pFile.toFile().toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Summary store " + pFile + " is too large");
+      }
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException | OverlappingFileLockException e) {
+      channel.close();
+      throw e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+    readRecords();
+    logger.log(Level.FINE, "Loaded", records.size(), "block summaries from", pFile);
+  }
+
+  /**
+   * Checks, that the states of all CPAs can be stored.
+   * The wrapped states of the ARG are stored, the ARG states themselves are not.
+   */
+  static void checkSupport(ConfigurableProgramAnalysis pCpa) throws InvalidConfigurationException {
+    for (ConfigurableProgramAnalysis cpa : CPAs.asIterable(pCpa)) {
+      if (!isSupported(cpa)) {
+        throw new InvalidConfigurationException("The summary store of BAM can not store the states of "
+            + cpa.getClass().getSimpleName());
+      }
+    }
+  }
+
+  private static boolean isSupported(ConfigurableProgramAnalysis pCpa) {
+    for (Class<? extends ConfigurableProgramAnalysis> supported : SUPPORTED_CPAS) {
+      if (supported.isInstance(pCpa)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void readRecords() {
+    byte[] key = new byte[KEY_LENGTH];
+    int position = 0;
+    while (position + HEADER_LENGTH <= buffer.limit()) {
+      buffer.position(position);
+      buffer.get(key);
+      long nodeNumbers = buffer.getLong();
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.limit() - position - HEADER_LENGTH) {
+        //The last record may be incomplete, if a process was killed during writing
+        break;
+      }
+      records.put(HashCode.fromBytes(key), nodeNumbers, position);
+      position += HEADER_LENGTH + length;
+    }
+  }
+
+  /**
+   * Returns the key of the block summary or NULL, if the reduced state can not be stored.
+   * Only the components of the state are a part of the key, the wrapper states of the reduced state
+   * have no own content. The location and the callstack are described by the numbering of the block.
+   */
+  @Nullable HashCode computeKey(AbstractState pReducedState, Precision pPrecision, Block pBlock) {
+    BlockNumbering numbering = getNumbering(pBlock);
+    Hasher hasher = Hashing.sha256().newHasher()
+        .putBytes(configurationHash.asBytes())
+        .putBytes(numbering.contentHash.asBytes());
+    for (AbstractState state : AbstractStates.asIterable(((ARGState) pReducedState).getWrappedState())) {
+      if (state instanceof AbstractWrapperState) {
+        continue;
+      }
+      hasher.putString(state.getClass().getName(), UTF_8);
+      if (state instanceof LocationState) {
+        hasher.putInt(numbering.getId(((LocationState) state).getLocationNode()));
+      } else if (state instanceof CallstackState) {
+        for (CallstackState stack = (CallstackState) state; stack != null; stack = stack.getPreviousState()) {
+          int callNode = numbering.getId(stack.getCallNode());
+          if (callNode < 0) {
+            //The callers outside the block can not be described by its content
+            return null;
+          }
+          hasher.putString(stack.getCurrentFunction(), UTF_8).putInt(callNode);
+        }
+      } else {
+        try {
+          hasher.putBytes(serialize(state));
+        } catch (IOException e) {
+          logger.logDebugException(e, "Could not serialize the reduced state of a block");
+          return null;
+        }
+      }
+    }
+    return hasher.putString(String.valueOf(pPrecision), UTF_8).hash();
+  }
+
+  private BlockNumbering getNumbering(Block pBlock) {
+    BlockNumbering result = blockNumberings.get(pBlock);
+    if (result == null) {
+      result = new BlockNumbering(pBlock);
+      blockNumberings.put(pBlock, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the wrapped return states of the block or NULL, if the block is not stored
+   * with the current numbers of its nodes.
+   */
+  @Nullable List<AbstractState> load(HashCode pKey, Block pBlock) {
+    Integer position = records.get(pKey, getNumbering(pBlock).nodeNumbers);
+    if (position == null || rejectedKeys.contains(pKey)) {
+      return null;
+    }
+    ByteBuffer record = buffer.duplicate();
+    record.position(position + HEADER_LENGTH - 4);
+    byte[] states = new byte[record.getInt()];
+    record.get(states);
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(states))) {
+      @SuppressWarnings("unchecked")
+      List<AbstractState> result = (List<AbstractState>) in.readObject();
+      return result;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      logger.logDebugException(e, "Could not restore block summary");
+      rejectedKeys.add(pKey);
+      return null;
+    }
+  }
+
+  /** The block summary is not used anymore in this run, e.g. if the block is recomputed. */
+  void reject(HashCode pKey) {
+    rejectedKeys.add(pKey);
+  }
+
+  /** Appends the return states of the block to the file, returns false, if they were not written. */
+  boolean store(HashCode pKey, Block pBlock, Collection<AbstractState> pReturnStates) {
+    long nodeNumbers = getNumbering(pBlock).nodeNumbers;
+    if (records.contains(pKey, nodeNumbers) || !storedRecords.put(pKey, nodeNumbers)) {
+      return false;
+    }
+    ArrayList<AbstractState> states = new ArrayList<>(pReturnStates.size());
+    for (AbstractState state : pReturnStates) {
+      states.add(((ARGState) state).getWrappedState());
+    }
+    byte[] payload;
+    try {
+      payload = serialize(states);
+    } catch (IOException e) {
+      //e.g. the states contain usages, which refer to the ARG
+      logger.logDebugException(e, "Could not serialize block summary");
+      return false;
+    }
+    ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+    record.put(pKey.asBytes()).putLong(nodeNumbers).putInt(payload.length).put(payload);
+    record.flip();
+    //The lock prevents interleaving with the records of other processes
+    try (FileLock lock = channel.lock()) {
+      long position = channel.size();
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+      return true;
+    } catch (IOException | OverlappingFileLockException e) {
+      logger.logUserException(Level.WARNING, e, "Could not store block summary");
+      return false;
+    }
+  }
+
+  private static byte[] serialize(Object pObject) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(pObject);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Numbers the nodes of a block in the order of a breadth-first traversal from the call nodes,
+   * the leaving edges of a node are visited in their order in the CFA.
+   */
+  private static class BlockNumbering {
+
+    private final Map<CFANode, Integer> ids = new HashMap<>();
+    //hash of the function names and the edges of the block
+    private final HashCode contentHash;
+    //fingerprint of the node numbers in the order of the traversal
+    private final long nodeNumbers;
+
+    private BlockNumbering(Block pBlock) {
+      Hasher content = Hashing.sha256().newHasher();
+      Hasher numbers = Hashing.sha256().newHasher();
+      Deque<CFANode> waitlist = new ArrayDeque<>();
+      for (CFANode callNode : CALL_NODE_ORDER.sortedCopy(pBlock.getCallNodes())) {
+        getOrAddId(callNode, waitlist);
+      }
+      while (!waitlist.isEmpty()) {
+        CFANode node = waitlist.poll();
+        content.putString(node.getFunctionName(), UTF_8)
+            .putBoolean(pBlock.isCallNode(node))
+            .putBoolean(pBlock.isReturnNode(node));
+        numbers.putInt(node.getNodeNumber());
+        for (CFAEdge edge : CFAUtils.leavingEdges(node)) {
+          CFANode successor = edge.getSuccessor();
+          content.putString(edge.getEdgeType().name(), UTF_8)
+              .putString(edge.getRawStatement(), UTF_8)
+              .putString(successor.getFunctionName(), UTF_8)
+              .putInt(pBlock.getNodes().contains(successor) ? getOrAddId(successor, waitlist) : -1);
+        }
+      }
+      //the nodes, which are not reachable from the call nodes, have no states
+      content.putInt(pBlock.getNodes().size() - ids.size());
+      contentHash = content.hash();
+      nodeNumbers = numbers.hash().asLong();
+    }
+
+    private int getOrAddId(CFANode pNode, Deque<CFANode> pWaitlist) {
+      Integer id = ids.get(pNode);
+      if (id == null) {
+        id = ids.size();
+        ids.put(pNode, id);
+        pWaitlist.add(pNode);
+      }
+      return id;
+    }
+
+    /** Returns the number of the node in the block or -1, if it is not a node of the block */
+    private int getId(CFANode pNode) {
+      Integer id = ids.get(pNode);
+      return id == null ? -1 : id;
+    }
+  }
+
+  //The call nodes are ordered by content, the node numbers only break the remaining ties
+  private static final Ordering<CFANode> CALL_NODE_ORDER = new Ordering<CFANode>() {
+    @Override
+    public int compare(CFANode pNode1, CFANode pNode2) {
+      int result = pNode1.getFunctionName().compareTo(pNode2.getFunctionName());
+      if (result == 0) {
+        result = describeLeavingEdges(pNode1).compareTo(describeLeavingEdges(pNode2));
+      }
+      return result != 0 ? result : pNode1.compareTo(pNode2);
+    }
+
+    private String describeLeavingEdges(CFANode pNode) {
+      StringBuilder result = new StringBuilder();
+      for (CFAEdge edge : CFAUtils.leavingEdges(pNode)) {
+        result.append(edge.getRawStatement()).append('\n');
+      }
+      return result.toString();
+    }
+  };
+}
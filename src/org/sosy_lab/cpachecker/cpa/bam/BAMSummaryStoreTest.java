@@ -0,0 +1,189 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.bam;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Files.DeleteOnCloseFile;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.CFACreationUtils;
+import org.sosy_lab.cpachecker.cfa.ast.FileLocation;
+import org.sosy_lab.cpachecker.cfa.blocks.Block;
+import org.sosy_lab.cpachecker.cfa.blocks.ReferencedVariable;
+import org.sosy_lab.cpachecker.cfa.model.BlankEdge;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.core.defaults.SingletonPrecision;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockIdentifier;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+
+public class BAMSummaryStoreTest {
+
+  private final Configuration config = Configuration.defaultConfiguration();
+  private final Precision precision = SingletonPrecision.getInstance();
+  private Block block;
+
+  @Before
+  public void setUp() {
+    block = createBlock("skip");
+  }
+
+  private static Block createBlock(String pStatement) {
+    //each node gets a new number, so equal blocks have different node numbers
+    CFANode entry = new CFANode("f");
+    CFANode exit = new CFANode("f");
+    CFACreationUtils.addEdgeUnconditionallyToCFA(new BlankEdge(pStatement, FileLocation.DUMMY, entry, exit, pStatement));
+    return new Block(ImmutableSet.<ReferencedVariable>of(), ImmutableSet.of(entry), ImmutableSet.of(exit),
+        ImmutableSet.of(entry, exit), ImmutableSet.<LockIdentifier>of());
+  }
+
+  @Test
+  public void testRestoreAfterReopen() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("summaries", ".bin")) {
+      try (BAMSummaryStore store = open(file)) {
+        HashCode key = store.computeKey(state(1), precision, block);
+        assertThat(store.store(key, block, states(2, 3))).isTrue();
+        //the second summary for the same key is not written
+        assertThat(store.store(key, block, states(4))).isFalse();
+      }
+
+      try (BAMSummaryStore store = open(file)) {
+        HashCode key = store.computeKey(state(1), precision, block);
+        assertThat(store.load(key, block)).containsExactly(new TestState(2), new TestState(3)).inOrder();
+        assertThat(store.load(store.computeKey(state(2), precision, block), block)).isNull();
+
+        store.reject(key);
+        assertThat(store.load(key, block)).isNull();
+      }
+    }
+  }
+
+  @Test
+  public void testIncompleteRecord() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("summaries", ".bin")) {
+      try (BAMSummaryStore store = open(file)) {
+        store.store(store.computeKey(state(1), precision, block), block, states(2));
+      }
+      //a process was killed during writing the header of the next record
+      java.nio.file.Files.write(file.toPath().toFile().toPath(), new byte[] {1, 2, 3},
+          StandardOpenOption.APPEND);
+
+      try (BAMSummaryStore store = open(file)) {
+        assertThat(store.load(store.computeKey(state(1), precision, block), block)).containsExactly(new TestState(2));
+      }
+    }
+  }
+
+  @Test
+  public void testNotSerializableState() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("summaries", ".bin")) {
+      try (BAMSummaryStore store = open(file)) {
+        assertThat(store.computeKey(new ARGState(new AbstractState() {}, null), precision, block)).isNull();
+        //only this block is not stored
+        assertThat(store.computeKey(state(1), precision, block)).isNotNull();
+      }
+    }
+  }
+
+  @Test
+  public void testRenumberedBlock() throws IOException {
+    Block renumbered = createBlock("skip");
+    try (DeleteOnCloseFile file = Files.createTempFile("summaries", ".bin")) {
+      try (BAMSummaryStore store = open(file)) {
+        HashCode key = store.computeKey(state(1), precision, block);
+        assertThat(store.computeKey(state(1), precision, renumbered)).isEqualTo(key);
+        assertThat(store.computeKey(state(1), precision, createBlock("x = 1;"))).isNotEqualTo(key);
+        assertThat(store.store(key, block, states(2))).isTrue();
+      }
+
+      try (BAMSummaryStore store = open(file)) {
+        HashCode key = store.computeKey(state(1), precision, renumbered);
+        //the stored states refer to the old node numbers
+        assertThat(store.load(key, renumbered)).isNull();
+        assertThat(store.store(key, renumbered, states(3))).isTrue();
+        assertThat(store.load(key, block)).containsExactly(new TestState(2));
+      }
+
+      try (BAMSummaryStore store = open(file)) {
+        HashCode key = store.computeKey(state(1), precision, renumbered);
+        assertThat(store.load(key, renumbered)).containsExactly(new TestState(3));
+      }
+    }
+  }
+
+  private BAMSummaryStore open(DeleteOnCloseFile file) throws IOException {
+    return new BAMSummaryStore(file.toPath(), config, TestLogManager.getInstance());
+  }
+
+  private static ARGState state(int value) {
+    return new ARGState(new TestState(value), null);
+  }
+
+  private static Collection<AbstractState> states(int... values) {
+    ImmutableList.Builder<AbstractState> result = ImmutableList.builder();
+    for (int value : values) {
+      result.add(state(value));
+    }
+    return result.build();
+  }
+
+  private static class TestState implements AbstractState, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final int value;
+
+    private TestState(int pValue) {
+      value = pValue;
+    }
+
+    @Override
+    public boolean equals(Object pObj) {
+      return pObj instanceof TestState && ((TestState) pObj).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return "TestState " + value;
+    }
+  }
+}
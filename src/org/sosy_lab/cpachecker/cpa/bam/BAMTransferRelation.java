@@ -42,6 +42,8 @@ import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cfa.blocks.Block;
 import org.sosy_lab.cpachecker.cfa.blocks.BlockPartitioning;
 import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
@@ -388,10 +390,16 @@ public class BAMTransferRelation implements TransferRelation {
     final Collection<AbstractState> reducedResult;
     // statesForFurtherAnalysis is always equal to reducedResult, except one special case (aka re-visiting recursion)
     final Collection<AbstractState> statesForFurtherAnalysis;
+    // time spent for the analysis of the block, it is a cost of its recomputation
+    TimeSpan computationTime = TimeSpan.empty();
 
     // try to get previously computed element from cache
-    final Pair<ReachedSet, Collection<AbstractState>> pair =
+    Pair<ReachedSet, Collection<AbstractState>> pair =
             data.bamCache.get(reducedInitialState, reducedInitialPrecision, currentBlock);
+    if (pair.getFirst() == null && !PCCInformation.isPCCEnabled()) {
+      // the block may be computed by an earlier run
+      pair = data.bamCache.restore(reducedInitialState, reducedInitialPrecision, currentBlock);
+    }
     ReachedSet reached = pair.getFirst();
     final Collection<AbstractState> cachedReturnStates = pair.getSecond();
 
@@ -427,9 +435,21 @@ public class BAMTransferRelation implements TransferRelation {
       //Who should add to this cache in case of partial hit?
       reducedToExpand.put(reducedInitialState, initialState);
 
-      reducedResult = performCompositeAnalysisWithCPAAlgorithm(reached);
+      final Timer blockAnalysisTimer = new Timer();
+      blockAnalysisTimer.start();
+      data.bamCache.startBlockAnalysis(reached);
+      try {
+        reducedResult = performCompositeAnalysisWithCPAAlgorithm(reached);
+      } finally {
+        blockAnalysisTimer.stop();
+        data.bamCache.finishBlockAnalysis(reached);
+      }
+      computationTime = blockAnalysisTimer.getLengthOfLastInterval();
 
       assert reducedResult != null;
+      if (!breakAnalysis && !reached.hasWaitingState() && !Iterables.any(reducedResult, IS_TARGET_STATE)) {
+        data.bamCache.store(reducedInitialState, reducedInitialPrecision, currentBlock, reducedResult);
+      }
 
       statesForFurtherAnalysis = filterResultStatesForFurtherAnalysis(reducedResult, cachedReturnStates);
     }
@@ -442,7 +462,7 @@ public class BAMTransferRelation implements TransferRelation {
 
     String functionName = AbstractStates.extractLocation(reducedInitialState).getFunctionName();
     innerStateToExternStates.put(functionName, reached);
-    data.initialStateToReachedSet.put(initialState, reached);
+    data.registerInitialState(initialState, reached);
 
     ARGState rootOfBlock = null;
     if (PCCInformation.isPCCEnabled()) {
@@ -454,7 +474,9 @@ public class BAMTransferRelation implements TransferRelation {
 
     // use 'reducedResult' for cache and 'statesForFurtherAnalysis' as return value,
     // both are always equal, except analysis of recursive procedures (@fixpoint-algorithm)
-    data.bamCache.put(reducedInitialState, reached.getPrecision(reached.getFirstState()), currentBlock, reducedResult, rootOfBlock);
+    data.bamCache.put(reducedInitialState, reached.getPrecision(reached.getFirstState()), currentBlock, reducedResult, rootOfBlock,
+        computationTime);
+    removeEvictedBlocks();
 
     return imbueAbstractStatesWithPrecision(reached, statesForFurtherAnalysis);
   }
@@ -602,7 +624,7 @@ public class BAMTransferRelation implements TransferRelation {
         //TODO need to remove from block cache as well
         //expandedToBlockCache.remove(child);
       }
-      data.initialStateToReachedSet.remove(state);
+      data.unregisterInitialState(state);
     }
     reducedToExpand.clear();
     if (correctARGsForBlocks != null) {
@@ -610,10 +632,33 @@ public class BAMTransferRelation implements TransferRelation {
     }
   }
 
+  /** Removes the references to the blocks evicted from the cache, so their reached sets are freed. */
+  private void removeEvictedBlocks() {
+    for (ReachedSet reached : data.bamCache.pollEvictedReachedSets()) {
+      AbstractState firstState = reached.getFirstState();
+      multiReducedToExpand.removeAll(firstState);
+      reducedToExpand.remove(firstState);
+      stateToInnerFunctionCalls.removeAll(firstState);
+      innerStateToExternStates.remove(AbstractStates.extractLocation(firstState).getFunctionName(), reached);
+    }
+  }
+
   public void cleanCaches() {
     data.clearCaches();
-    data.initialStateToReachedSet.clear();
-    data.expandedStateToReducedState.clear();
+    cleanStateMappings();
+  }
+
+  /**
+   * Cleans the caches, but keeps the cached blocks, which contain none of the changed nodes.
+   * The kept blocks are not affected by a precision change at the given nodes,
+   * so they are reused as cache hits in the next analysis.
+   */
+  public void cleanCaches(Set<CFANode> changedNodes) {
+    data.clearCaches(changedNodes);
+    cleanStateMappings();
+  }
+
+  private void cleanStateMappings() {
     reducedToExpand.clear();
     multiReducedToExpand.clear();
     innerStateToExternStates.clear();
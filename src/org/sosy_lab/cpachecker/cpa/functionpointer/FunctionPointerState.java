@@ -49,7 +49,8 @@ public class FunctionPointerState implements LatticeAbstractState<FunctionPointe
   static abstract class FunctionPointerTarget {
   }
 
-  static final class UnknownTarget extends FunctionPointerTarget {
+  static final class UnknownTarget extends FunctionPointerTarget implements Serializable {
+    private static final long serialVersionUID = -4126571837450964523L;
     private static final UnknownTarget instance = new UnknownTarget();
 
     private UnknownTarget() { }
@@ -72,6 +73,10 @@ public class FunctionPointerState implements LatticeAbstractState<FunctionPointe
     public int hashCode() {
       return toString().hashCode();
     }
+
+    private Object readResolve() {
+      return instance;
+    }
   }
 
   static final class InvalidTarget extends FunctionPointerTarget implements Serializable {
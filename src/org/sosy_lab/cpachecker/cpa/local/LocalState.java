@@ -57,25 +57,39 @@ public class LocalState implements AbstractState {
   }
   //map from variable id to its type
   private final LocalState previousState;
-  private final Map<AbstractIdentifier, DataType> DataInfo;
+  /* The map is shared with the parent state and is copied only before the first modification:
+   * most of edges do not change anything
+   */
+  private Map<AbstractIdentifier, DataType> DataInfo;
+  private boolean isDataInfoCloned;
 
   public LocalState(LocalState state) {
     DataInfo = new HashMap<>();
+    isDataInfoCloned = true;
     previousState = state;
   }
 
   private LocalState(Map<AbstractIdentifier, DataType> oldMap, LocalState state) {
-    DataInfo = new HashMap<>(oldMap);
-    //Strange, but 'new TreeMap<>(oldMap)' lost some values: "id -> null" appears
+    DataInfo = oldMap;
+    isDataInfoCloned = false;
     previousState = state;
   }
 
+  private Map<AbstractIdentifier, DataType> getModifiableDataInfo() {
+    if (!isDataInfoCloned) {
+      //Strange, but 'new TreeMap<>(oldMap)' lost some values: "id -> null" appears
+      DataInfo = new HashMap<>(DataInfo);
+      isDataInfoCloned = true;
+    }
+    return DataInfo;
+  }
+
   public LocalState getPreviousState() {
     return previousState;
   }
 
   public void forceSetLocal(AbstractIdentifier name) {
-    DataInfo.put(name, DataType.LOCAL);
+    getModifiableDataInfo().put(name, DataType.LOCAL);
   }
 
   public void set(AbstractIdentifier name, DataType type) {
@@ -88,7 +102,7 @@ public class LocalState implements AbstractState {
     if (infoId == null) {
       //We have no information
       if (type != null) {
-        DataInfo.put(name, type);
+        getModifiableDataInfo().put(name, type);
       }
       return;
     }
@@ -100,9 +114,11 @@ public class LocalState implements AbstractState {
       result = DataType.max(type, lastType);
     }
     if (result == null) {
-      DataInfo.remove(name);
-    } else {
-      DataInfo.put(name, result);
+      if (DataInfo.containsKey(name)) {
+        getModifiableDataInfo().remove(name);
+      }
+    } else if (DataInfo.get(name) != result) {
+      getModifiableDataInfo().put(name, result);
     }
   }
 
@@ -160,14 +176,17 @@ public class LocalState implements AbstractState {
     }
 
     for (AbstractIdentifier del : toDelete) {
-      joinState.DataInfo.remove(del);
+      joinState.getModifiableDataInfo().remove(del);
     }
 
     for (AbstractIdentifier name : pState2.DataInfo.keySet()) {
       if (!joinState.DataInfo.containsKey(name) && pState2.DataInfo.get(name) == DataType.GLOBAL) {
-        joinState.DataInfo.put(name, DataType.GLOBAL);
+        joinState.getModifiableDataInfo().put(name, DataType.GLOBAL);
       } else if (joinState.DataInfo.containsKey(name)) {
-        joinState.DataInfo.put(name, DataType.max(this.DataInfo.get(name), pState2.DataInfo.get(name)));
+        DataType joinedType = DataType.max(this.DataInfo.get(name), pState2.DataInfo.get(name));
+        if (joinState.DataInfo.get(name) != joinedType) {
+          joinState.getModifiableDataInfo().put(name, joinedType);
+        }
       }
     }
 
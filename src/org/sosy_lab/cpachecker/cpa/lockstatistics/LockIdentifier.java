@@ -23,11 +23,17 @@
  */
 package org.sosy_lab.cpachecker.cpa.lockstatistics;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
-public class LockIdentifier implements Comparable<LockIdentifier> {
+public class LockIdentifier implements Comparable<LockIdentifier>, Serializable {
+
+  private static final long serialVersionUID = 3470839745613958391L;
+
   public static enum LockType {
     MUTEX,
     GLOBAL_LOCK,
@@ -39,16 +45,20 @@ public class LockIdentifier implements Comparable<LockIdentifier> {
     }
   }
 
-  private static Set<LockIdentifier> createdIds;
+  //Interning table: every lock has a dense id, which is used as an index in LockSet
+  private static final Map<LockIdentifier, LockIdentifier> createdIds = new HashMap<>();
+  private static final List<LockIdentifier> idToLock = new ArrayList<>();
 
   private final String name;
   private final String variable;
   private final LockType type;
+  private final int id;
 
-  private LockIdentifier(String pName, String pVariable, LockType pType) {
+  private LockIdentifier(String pName, String pVariable, LockType pType, int pId) {
     name = pName;
     type = pType;
     variable = pVariable;
+    id = pId;
   }
 
   public static LockIdentifier of(String name) {
@@ -59,21 +69,26 @@ public class LockIdentifier implements Comparable<LockIdentifier> {
     return LockIdentifier.of(name, var, LockType.GLOBAL_LOCK);
   }
 
-  public static LockIdentifier of(String name, String var, LockType type) {
-    if (createdIds == null) {
-      createdIds = new HashSet<>();
-    }
+  public static synchronized LockIdentifier of(String name, String var, LockType type) {
     String varName = getCleanName(var);
-    for (LockIdentifier id : createdIds) {
-      if ( id.name.equals(name) && id.type == type && id.variable.equals(varName)) {
-        return id;
-      }
+    LockIdentifier newId = new LockIdentifier(name, varName, type, idToLock.size());
+    LockIdentifier oldId = createdIds.get(newId);
+    if (oldId != null) {
+      return oldId;
     }
-    LockIdentifier newId = new LockIdentifier(name, varName, type);
-    createdIds.add(newId);
+    createdIds.put(newId, newId);
+    idToLock.add(newId);
     return newId;
   }
 
+  static synchronized LockIdentifier getById(int id) {
+    return idToLock.get(id);
+  }
+
+  public int getId() {
+    return id;
+  }
+
   public boolean hasEqualNameAndVariable(String lockName, String variableName) {
     return (name.equals(lockName) && variable.equals(variableName));
   }
@@ -150,4 +165,25 @@ public class LockIdentifier implements Comparable<LockIdentifier> {
     return result;
   }
 
+  private Object writeReplace() {
+    //The ids are given in the order of creation, so only the name is stored
+    return new SerialProxy(name, variable, type);
+  }
+
+  private static class SerialProxy implements Serializable {
+    private static final long serialVersionUID = -2185376128346437042L;
+    private final String name;
+    private final String variable;
+    private final LockType type;
+
+    public SerialProxy(String pName, String pVariable, LockType pType) {
+      name = pName;
+      variable = pVariable;
+      type = pType;
+    }
+
+    private Object readResolve() {
+      return LockIdentifier.of(name, variable, type);
+    }
+  }
 }
@@ -0,0 +1,218 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.lockstatistics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of locks, encoded as a bitset over the dense ids of {@link LockIdentifier}.
+ * All set operations are word-wise and do not allocate.
+ */
+public final class LockSet implements Iterable<LockIdentifier> {
+
+  private static final LockSet EMPTY = new LockSet(new long[0]);
+
+  //Trailing zero words are always trimmed, so equal sets have equal arrays
+  private final long[] words;
+  private final int size;
+  private final int hash;
+
+  private LockSet(long[] pWords) {
+    words = pWords;
+    int cardinality = 0;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+    }
+    size = cardinality;
+    hash = Arrays.hashCode(words);
+  }
+
+  public static LockSet empty() {
+    return EMPTY;
+  }
+
+  public static LockSet copyOf(Collection<LockIdentifier> locks) {
+    if (locks.isEmpty()) {
+      return EMPTY;
+    }
+    int maxId = 0;
+    for (LockIdentifier lock : locks) {
+      maxId = Math.max(maxId, lock.getId());
+    }
+    long[] newWords = new long[(maxId >> 6) + 1];
+    for (LockIdentifier lock : locks) {
+      newWords[lock.getId() >> 6] |= 1L << lock.getId();
+    }
+    return new LockSet(newWords);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(LockIdentifier lock) {
+    int index = lock.getId() >> 6;
+    return index < words.length && (words[index] & (1L << lock.getId())) != 0;
+  }
+
+  /**
+   * @return true, if all locks of the other set are contained in this one
+   */
+  public boolean containsAll(LockSet other) {
+    if (other.size > size || other.words.length > words.length) {
+      return false;
+    }
+    for (int i = 0; i < other.words.length; i++) {
+      if ((other.words[i] & ~words[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean intersects(LockSet other) {
+    int length = Math.min(words.length, other.words.length);
+    for (int i = 0; i < length; i++) {
+      if ((words[i] & other.words[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a mutable mask, which can be used to compute an intersection of several sets
+   * with {@link #retainIn(long[])} and {@link #intersects(long[])}.
+   */
+  public long[] toMask() {
+    return words.clone();
+  }
+
+  /**
+   * Removes from the mask all locks, which are not contained in this set.
+   * @return true, if the mask is still nonempty
+   */
+  public boolean retainIn(long[] mask) {
+    boolean nonEmpty = false;
+    for (int i = 0; i < mask.length; i++) {
+      if (i < words.length) {
+        mask[i] &= words[i];
+        nonEmpty |= (mask[i] != 0);
+      } else {
+        mask[i] = 0;
+      }
+    }
+    return nonEmpty;
+  }
+
+  public boolean intersects(long[] mask) {
+    int length = Math.min(words.length, mask.length);
+    for (int i = 0; i < length; i++) {
+      if ((words[i] & mask[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Iterator<LockIdentifier> iterator() {
+    return new Iterator<LockIdentifier>() {
+      private int next = nextSetBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public LockIdentifier next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        LockIdentifier result = LockIdentifier.getById(next);
+        next = nextSetBit(next + 1);
+        return result;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private int nextSetBit(int from) {
+    int index = from >> 6;
+    if (index >= words.length) {
+      return -1;
+    }
+    long word = words[index] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++index == words.length) {
+        return -1;
+      }
+      word = words[index];
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    LockSet other = (LockSet) obj;
+    return size == other.size && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (LockIdentifier lock : this) {
+      if (sb.length() > 1) {
+        sb.append(", ");
+      }
+      sb.append(lock);
+    }
+    return sb.append("]").toString();
+  }
+}
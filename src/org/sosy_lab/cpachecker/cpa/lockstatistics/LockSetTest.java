@@ -0,0 +1,90 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.lockstatistics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class LockSetTest {
+
+  private List<LockIdentifier> locks;
+
+  @Before
+  public void setUp() {
+    locks = new ArrayList<>();
+    //More than one word of the bitset
+    for (int i = 0; i < 130; i++) {
+      locks.add(LockIdentifier.of("lock" + i));
+    }
+  }
+
+  @Test
+  public void testInterning() {
+    assertThat(LockIdentifier.of("lock5")).isSameAs(locks.get(5));
+    assertThat(LockIdentifier.getById(locks.get(5).getId())).isSameAs(locks.get(5));
+  }
+
+  @Test
+  public void testContainsAll() {
+    LockSet big = LockSet.copyOf(ImmutableSet.of(locks.get(1), locks.get(70), locks.get(129)));
+    LockSet small = LockSet.copyOf(ImmutableSet.of(locks.get(1), locks.get(129)));
+
+    assertThat(big.containsAll(small)).isTrue();
+    assertThat(small.containsAll(big)).isFalse();
+    assertThat(small.containsAll(LockSet.empty())).isTrue();
+    assertThat(LockSet.empty().containsAll(small)).isFalse();
+  }
+
+  @Test
+  public void testIntersection() {
+    LockSet set1 = LockSet.copyOf(ImmutableSet.of(locks.get(1), locks.get(70)));
+    LockSet set2 = LockSet.copyOf(ImmutableSet.of(locks.get(70), locks.get(129)));
+    LockSet set3 = LockSet.copyOf(ImmutableSet.of(locks.get(2)));
+
+    assertThat(set1.intersects(set2)).isTrue();
+    assertThat(set1.intersects(set3)).isFalse();
+
+    long[] mask = set1.toMask();
+    assertThat(set2.retainIn(mask)).isTrue();
+    assertThat(set3.intersects(mask)).isFalse();
+    assertThat(set3.retainIn(mask)).isFalse();
+  }
+
+  @Test
+  public void testEqualsAndIteration() {
+    LockSet set = LockSet.copyOf(ImmutableSet.of(locks.get(129), locks.get(3)));
+
+    assertThat(set).isEqualTo(LockSet.copyOf(ImmutableSet.of(locks.get(3), locks.get(129))));
+    assertThat(set.size()).isEqualTo(2);
+    assertThat(set).containsExactly(locks.get(3), locks.get(129)).inOrder();
+    assertThat(LockSet.copyOf(ImmutableSet.<LockIdentifier>of())).isSameAs(LockSet.empty());
+  }
+}
@@ -91,19 +91,10 @@ public class LockStatisticsState implements Comparable<LockStatisticsState>, Abs
     public void set(LockIdentifier lockId, int num) {
       //num can be equal 0, this means, that in origin file it is 0 and we should delete locks
 
-      Integer size = mutableLocks.get(lockId);
-
-      if (size == null) {
-        size = 0;
-      }
-      if (num > size) {
-        for (int i = 0; i < num - size; i++) {
-          add(lockId);
-        }
-      } else if (num < size) {
-        for (int i = 0; i < size - num; i++) {
-          free(lockId);
-        }
+      if (num > 0) {
+        mutableLocks.put(lockId, num);
+      } else {
+        mutableLocks.remove(lockId);
       }
     }
 
@@ -217,6 +208,8 @@ public class LockStatisticsState implements Comparable<LockStatisticsState>, Abs
 
   private final SortedMap<LockIdentifier, Integer> locks;
   private final LockStatisticsState toRestore;
+  //Lazily computed bitset of lock identifiers, the state is immutable
+  private transient LockSet lockSet;
   //if we need restore state, we save it here
   //Used for function annotations like annotate.function_name.restore
   public LockStatisticsState() {
@@ -242,6 +235,13 @@ public class LockStatisticsState implements Comparable<LockStatisticsState>, Abs
     return Sets.newTreeSet(locks.keySet());
   }
 
+  public LockSet getLockSet() {
+    if (lockSet == null) {
+      lockSet = LockSet.copyOf(locks.keySet());
+    }
+    return lockSet;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -312,13 +312,7 @@ public class LockStatisticsState implements Comparable<LockStatisticsState>, Abs
    */
   public boolean isLessOrEqual(LockStatisticsState other) {
     //State is less, if it has the same locks as the other and may be some more
-
-    for (LockIdentifier lock : other.locks.keySet()) {
-      if (!(this.locks.containsKey(lock))) {
-        return false;
-      }
-    }
-    return true;
+    return getLockSet().containsAll(other.getLockSet());
   }
 
   /**
@@ -356,7 +350,7 @@ public class LockStatisticsState implements Comparable<LockStatisticsState>, Abs
   }
 
   public boolean intersects(LockStatisticsState pLocks) {
-    return !Sets.intersection(locks.keySet(), pLocks.locks.keySet()).isEmpty();
+    return getLockSet().intersects(pLocks.getLockSet());
   }
 
   public LockStatisticsStateBuilder builder() {
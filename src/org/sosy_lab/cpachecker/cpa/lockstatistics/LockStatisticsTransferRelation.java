@@ -27,6 +27,7 @@ import static com.google.common.collect.FluentIterable.from;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -76,6 +77,7 @@ import org.sosy_lab.cpachecker.util.Pair;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 
 @Options(prefix="cpa.lockStatistics")
 public class LockStatisticsTransferRelation implements TransferRelation
@@ -90,6 +92,14 @@ public class LockStatisticsTransferRelation implements TransferRelation
   final Set<LockInfo> lockDescription;
   private final LogManager logger;
 
+  //Effects depend only on the edge, so they are computed once per edge
+  private final Map<CFAEdge, List<AbstractLockEffect>> edgeEffects = new HashMap<>();
+  //The number of different lock states is small, so equal states share one instance
+  private final Map<LockStatisticsState, LockStatisticsState> canonicalStates = new HashMap<>();
+  //state -> effects of an edge -> successor, null successor means, that the edge is infeasible
+  private final Map<LockStatisticsState, Map<List<AbstractLockEffect>, LockStatisticsState>> transitionCache
+    = new HashMap<>();
+
   int i = 0;
   public LockStatisticsTransferRelation(Configuration config, LogManager logger) throws InvalidConfigurationException {
     config.inject(this);
@@ -110,13 +120,11 @@ public class LockStatisticsTransferRelation implements TransferRelation
     //Firstly, determine operations with locks
     List<AbstractLockEffect> toProcess = determineOperations(cfaEdge);
 
-    final LockStatisticsStateBuilder builder = lockStatisticsElement.builder();
-
-    for (AbstractLockEffect e : toProcess) {
-      e.effect(builder);
+    if (toProcess.isEmpty()) {
+      return Collections.singleton(lockStatisticsElement);
     }
 
-    LockStatisticsState successor = builder.build();
+    LockStatisticsState successor = getSuccessor(lockStatisticsElement, toProcess);
 
     if (successor != null) {
       return Collections.singleton(successor);
@@ -125,6 +133,35 @@ public class LockStatisticsTransferRelation implements TransferRelation
     }
   }
 
+  private LockStatisticsState getSuccessor(LockStatisticsState state, List<AbstractLockEffect> effects) {
+    Map<List<AbstractLockEffect>, LockStatisticsState> transitions = transitionCache.get(state);
+    if (transitions == null) {
+      transitions = new HashMap<>();
+      transitionCache.put(state, transitions);
+    } else if (transitions.containsKey(effects)) {
+      return transitions.get(effects);
+    }
+
+    final LockStatisticsStateBuilder builder = state.builder();
+
+    for (AbstractLockEffect e : effects) {
+      e.effect(builder);
+    }
+
+    LockStatisticsState successor = builder.build();
+
+    if (successor != null) {
+      LockStatisticsState canonicalState = canonicalStates.get(successor);
+      if (canonicalState == null) {
+        canonicalStates.put(successor, successor);
+      } else {
+        successor = canonicalState;
+      }
+    }
+    transitions.put(effects, successor);
+    return successor;
+  }
+
   public Set<LockIdentifier> getAffectedLocks(CFAEdge cfaEdge) {
     try {
       return from(determineOperations(cfaEdge))
@@ -148,6 +185,15 @@ public class LockStatisticsTransferRelation implements TransferRelation
   }
 
   private List<AbstractLockEffect> determineOperations(CFAEdge cfaEdge) throws UnrecognizedCCodeException {
+    List<AbstractLockEffect> toProcess = edgeEffects.get(cfaEdge);
+    if (toProcess == null) {
+      toProcess = ImmutableList.copyOf(determineOperations0(cfaEdge));
+      edgeEffects.put(cfaEdge, toProcess);
+    }
+    return toProcess;
+  }
+
+  private List<AbstractLockEffect> determineOperations0(CFAEdge cfaEdge) throws UnrecognizedCCodeException {
     List<AbstractLockEffect> toProcess;
     switch (cfaEdge.getEdgeType()) {
 
@@ -87,4 +87,18 @@ public class AcquireLockEffect extends LockEffect {
   public AcquireLockEffect cloneWithTarget(LockIdentifier id) {
     return createEffectForId(id, this.maxRecursiveCounter);
   }
+
+  @Override
+  public int hashCode() {
+    return 31 * super.hashCode() + maxRecursiveCounter;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!super.equals(obj)) {
+      return false;
+    }
+    AcquireLockEffect other = (AcquireLockEffect) obj;
+    return maxRecursiveCounter == other.maxRecursiveCounter;
+  }
 }
@@ -70,4 +70,22 @@ public class CheckLockEffect extends LockEffect {
   public CheckLockEffect cloneWithTarget(LockIdentifier id) {
     return createEffectForId(this.p, this.isTruth, id);
   }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + (isTruth ? 1231 : 1237);
+    result = prime * result + p;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!super.equals(obj)) {
+      return false;
+    }
+    CheckLockEffect other = (CheckLockEffect) obj;
+    return isTruth == other.isTruth && p == other.p;
+  }
 }
@@ -40,4 +40,34 @@ public abstract class LockEffect implements AbstractLockEffect {
   public LockIdentifier getAffectedLock() {
     return target;
   }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = getClass().hashCode();
+    result = prime * result + ((target == null) ? 0 : target.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    LockEffect other = (LockEffect) obj;
+    if (target == null) {
+      if (other.target != null) {
+        return false;
+      }
+    } else if (!target.equals(other.target)) {
+      return false;
+    }
+    return true;
+  }
 }
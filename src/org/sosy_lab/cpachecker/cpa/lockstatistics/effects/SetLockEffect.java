@@ -63,4 +63,18 @@ public class SetLockEffect extends LockEffect {
   public SetLockEffect cloneWithTarget(LockIdentifier id) {
     return createEffectForId(this.p, id);
   }
+
+  @Override
+  public int hashCode() {
+    return 31 * super.hashCode() + p;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!super.equals(obj)) {
+      return false;
+    }
+    SetLockEffect other = (SetLockEffect) obj;
+    return p == other.p;
+  }
 }
@@ -38,6 +38,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.log.LogManager;
@@ -71,6 +73,7 @@ import org.sosy_lab.cpachecker.util.AbstractStates;
 import org.sosy_lab.cpachecker.util.Precisions;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
 import org.sosy_lab.cpachecker.util.predicates.PathChecker;
+import org.sosy_lab.cpachecker.util.predicates.interpolation.CounterexampleTraceInfo;
 import org.sosy_lab.cpachecker.util.predicates.interpolation.InterpolationManager;
 import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormula;
 import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormulaManager;
@@ -79,6 +82,7 @@ import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
 import org.sosy_lab.cpachecker.util.refinement.PrefixProvider;
 import org.sosy_lab.solver.api.BooleanFormula;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
 
 
@@ -114,9 +118,18 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
   public BAMPredicateRefiner(final ConfigurableProgramAnalysis pCpa, BAMPredicateAbstractionRefinementStrategy strategy)
       throws InvalidConfigurationException {
 
+    this(pCpa, strategy, null);
+  }
+
+  /**
+   * @param pInterpolation if not null, the interpolants are computed in a separate solver
+   */
+  public BAMPredicateRefiner(final ConfigurableProgramAnalysis pCpa, BAMPredicateAbstractionRefinementStrategy strategy,
+      @Nullable SeparateSolverInterpolation pInterpolation) throws InvalidConfigurationException {
+
     super(pCpa);
 
-    initRefiner(pCpa, strategy);
+    initRefiner(pCpa, strategy, pInterpolation);
   }
 
   public BAMPredicateRefiner(final ConfigurableProgramAnalysis pCpa) throws InvalidConfigurationException {
@@ -141,11 +154,11 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
                                           predicateCpa.getSolver(),
                                           predicateCpa.getPredicateManager(),
                                           predicateCpa.getStaticRefiner());
-    initRefiner(pCpa, strategy);
+    initRefiner(pCpa, strategy, null);
   }
 
-  private void initRefiner(ConfigurableProgramAnalysis pCpa, BAMPredicateAbstractionRefinementStrategy strategy)
-      throws InvalidConfigurationException {
+  private void initRefiner(ConfigurableProgramAnalysis pCpa, BAMPredicateAbstractionRefinementStrategy strategy,
+      @Nullable SeparateSolverInterpolation pInterpolation) throws InvalidConfigurationException {
 
 
     if (!(pCpa instanceof WrapperCPA)) {
@@ -193,7 +206,8 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
                                           strategy,
                                           predicateCpa.getSolver(),
                                           predicateCpa.getAssumesStore(),
-                                          predicateCpa.getCfa());
+                                          predicateCpa.getCfa(),
+                                          pInterpolation);
   }
 
   @Override
@@ -206,10 +220,12 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
   /**
    * This is a small extension of PredicateCPARefiner that overrides
    * {@link #getFormulasForPath(List, ARGState)} so that it respects BAM.
+   * If a separate solver is given, the interpolants are computed there first.
    */
   private static final class ExtendedPredicateRefiner extends PredicateCPARefiner {
 
     private final Timer ssaRenamingTimer = new Timer();
+    private final @Nullable SeparateSolverInterpolation separateInterpolation;
 
     private ExtendedPredicateRefiner(final Configuration config, final LogManager logger,
         final ConfigurableProgramAnalysis pCpa,
@@ -220,7 +236,8 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
         final RefinementStrategy pStrategy,
         final Solver pSolver,
         final PredicateAssumeStore pAssumesStore,
-        final CFA pCfa) throws InvalidConfigurationException {
+        final CFA pCfa,
+        final @Nullable SeparateSolverInterpolation pInterpolation) throws InvalidConfigurationException {
 
       super(config,
           logger,
@@ -234,6 +251,22 @@ public class BAMPredicateRefiner extends AbstractBAMBasedRefiner {
           pAssumesStore,
           pCfa);
 
+      separateInterpolation = pInterpolation;
+    }
+
+    @Override
+    protected CounterexampleTraceInfo buildCounterexampleTrace(Set<ARGState> elementsOnPath,
+        List<ARGState> abstractionStatesTrace, List<BooleanFormula> formulas,
+        boolean needsInterpolants) throws CPAException, InterruptedException {
+
+      if (separateInterpolation != null && needsInterpolants) {
+        Optional<CounterexampleTraceInfo> cex = separateInterpolation.buildInfeasibleTrace(abstractionStatesTrace, formulas);
+        if (cex.isPresent()) {
+          return cex.get();
+        }
+        // the path may be feasible, the main solver computes the precise error path
+      }
+      return super.buildCounterexampleTrace(elementsOnPath, abstractionStatesTrace, formulas, needsInterpolants);
     }
 
     @Override
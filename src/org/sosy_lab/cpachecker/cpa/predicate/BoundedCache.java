@@ -0,0 +1,136 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A cache for the results of solver queries, which may be bounded in size.
+ * If the cache is full, the entry, which was the cheapest to compute,
+ * is evicted among the few least recently used ones.
+ * Thus, the recently used and expensive entries are kept.
+ */
+class BoundedCache<K, V> {
+
+  // the number of least recently used entries, which are compared by costs
+  private static final int EVICTION_CANDIDATES = 8;
+
+  private static class CacheEntry<V> {
+    private final V value;
+    private final long cost;
+
+    private CacheEntry(V pValue, long pCost) {
+      value = pValue;
+      cost = pCost;
+    }
+  }
+
+  private final int maxSize;
+  // access order, the least recently used entries are the first ones
+  private final Map<K, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  int hits = 0;
+  int misses = 0;
+  int evictions = 0;
+
+  /**
+   * @param pMaxSize the maximal number of entries or 0, if the cache is unbounded
+   */
+  BoundedCache(int pMaxSize) {
+    maxSize = pMaxSize;
+  }
+
+  @Nullable V get(K key) {
+    CacheEntry<V> entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  /**
+   * Checks, whether one of the keys is cached.
+   * The check is counted as a single hit or miss.
+   */
+  boolean containsAnyKey(K key, K otherKey) {
+    if (entries.get(key) != null || entries.get(otherKey) != null) {
+      hits++;
+      return true;
+    }
+    misses++;
+    return false;
+  }
+
+  /**
+   * Checks the key without counting it as a hit or miss and without changing the order of usage.
+   */
+  boolean peek(K key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * @param cost the time spent for computing the value (in ms)
+   */
+  void put(K key, V value, long cost) {
+    entries.put(key, new CacheEntry<>(value, cost));
+    if (maxSize > 0 && entries.size() > maxSize) {
+      evictCheapestEntry();
+    }
+  }
+
+  private void evictCheapestEntry() {
+    Iterator<Map.Entry<K, CacheEntry<V>>> iterator = entries.entrySet().iterator();
+    K cheapestKey = null;
+    long minCost = Long.MAX_VALUE;
+    // the newest entry is the last one, so it is never compared
+    for (int i = 0; i < EVICTION_CANDIDATES && i < entries.size() - 1; i++) {
+      Map.Entry<K, CacheEntry<V>> candidate = iterator.next();
+      if (candidate.getValue().cost < minCost) {
+        minCost = candidate.getValue().cost;
+        cheapestKey = candidate.getKey();
+      }
+    }
+    entries.remove(cheapestKey);
+    evictions++;
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  void clear() {
+    entries.clear();
+  }
+
+  @Override
+  public String toString() {
+    return size() + " entries (" + hits + " hits, " + misses + " misses, " + evictions + " evictions)";
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(2);
+    cache.put(1, "a", 10);
+    cache.put(2, "b", 10);
+    // the access makes the entry 2 the least recently used one
+    assertThat(cache.get(1)).isEqualTo("a");
+    cache.put(3, "c", 10);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.peek(1)).isTrue();
+    assertThat(cache.peek(2)).isFalse();
+    assertThat(cache.peek(3)).isTrue();
+    assertThat(cache.evictions).isEqualTo(1);
+  }
+
+  @Test
+  public void testCheapestIsEvicted() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(3);
+    cache.put(1, "a", 100);
+    cache.put(2, "b", 1);
+    cache.put(3, "c", 50);
+    // the new entry is the cheapest one, but it is never evicted
+    cache.put(4, "d", 0);
+
+    assertThat(cache.peek(1)).isTrue();
+    assertThat(cache.peek(2)).isFalse();
+    assertThat(cache.peek(3)).isTrue();
+    assertThat(cache.peek(4)).isTrue();
+  }
+
+  @Test
+  public void testOnlyLeastRecentlyUsedAreCandidates() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(10);
+    for (int i = 0; i < 9; i++) {
+      cache.put(i, "expensive", 100);
+    }
+    // the cheap entry is not among the eight least recently used ones
+    cache.put(9, "cheap", 1);
+    cache.put(10, "new", 100);
+
+    assertThat(cache.peek(0)).isFalse();
+    assertThat(cache.peek(9)).isTrue();
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+  @Test
+  public void testUnbounded() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(0);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, "value", 1);
+    }
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.evictions).isEqualTo(0);
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    BoundedCache<Integer, String> cache = new BoundedCache<>(0);
+    cache.put(1, "a", 1);
+
+    assertThat(cache.get(2)).isNull();
+    assertThat(cache.containsAnyKey(2, 3)).isFalse();
+    assertThat(cache.containsAnyKey(2, 1)).isTrue();
+    assertThat(cache.peek(1)).isTrue();
+    assertThat(cache.peek(2)).isFalse();
+
+    // every lookup is counted once, peek is not counted
+    assertThat(cache.hits).isEqualTo(1);
+    assertThat(cache.misses).isEqualTo(2);
+  }
+}
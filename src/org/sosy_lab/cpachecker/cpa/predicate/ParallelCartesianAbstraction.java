@@ -0,0 +1,192 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.sosy_lab.common.ShutdownManager;
+import org.sosy_lab.common.ShutdownNotifier;
+import org.sosy_lab.common.concurrency.Threads;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.util.predicates.smt.BooleanFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
+import org.sosy_lab.solver.SolverException;
+import org.sosy_lab.solver.api.BooleanFormula;
+import org.sosy_lab.solver.api.ProverEnvironment;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Checks the predicates of a cartesian abstraction in parallel.
+ * Every thread has its own solver, the formulas are copied into it as SMT-LIB2 strings.
+ * The predicates are split into consecutive chunks, one per solver,
+ * so the results are in the same order as the predicates.
+ * The solvers observe their own shutdown notifier, which is used to stop the running
+ * queries, if one of them failed. After a failure the instance can not be used anymore.
+ * The solvers have to be released with {@link #close()}.
+ */
+class ParallelCartesianAbstraction implements AutoCloseable {
+
+  // time to wait for the running queries after their shutdown was requested
+  private static final long TERMINATION_TIMEOUT_SECONDS = 10;
+
+  private final FormulaManagerView fmgr;
+  private final LogManager logger;
+  private final ShutdownManager workerShutdown;
+  private final List<Solver> solvers = new ArrayList<>();
+  private final ExecutorService executor;
+
+  ParallelCartesianAbstraction(int threads, FormulaManagerView pFmgr, Configuration config,
+      LogManager pLogger, ShutdownNotifier shutdownNotifier) throws InvalidConfigurationException {
+    fmgr = pFmgr;
+    logger = pLogger;
+    workerShutdown = ShutdownManager.createWithParent(shutdownNotifier);
+    for (int i = 0; i < threads; i++) {
+      solvers.add(Solver.create(config, logger, workerShutdown.getNotifier()));
+    }
+    // daemon threads do not keep the JVM alive, if the instance is not closed
+    executor = Executors.newFixedThreadPool(threads, Threads.threadFactoryBuilder().setDaemon(true).build());
+  }
+
+  /**
+   * @param f the formula, which is checked
+   * @param predicates the instantiated predicates
+   * @return for each predicate -1: predicate is false, 0: predicate is don't care, 1: predicate is true
+   */
+  byte[] computePredicateValues(BooleanFormula f, List<BooleanFormula> predicates)
+      throws SolverException, InterruptedException {
+    workerShutdown.getNotifier().shutdownIfNecessary();
+    // the formula managers of the main solver are used only in this thread
+    final String formula = fmgr.dumpFormula(f).toString();
+    int chunkSize = (predicates.size() + solvers.size() - 1) / solvers.size();
+
+    // the results are taken in the order of completion, so a failure is noticed immediately
+    CompletionService<byte[]> completionService = new ExecutorCompletionService<>(executor);
+    Map<Future<byte[]>, Integer> positions = new HashMap<>();
+    final ShutdownNotifier notifier = workerShutdown.getNotifier();
+    boolean successful = false;
+    try {
+      for (int start = 0, i = 0; start < predicates.size(); start += chunkSize, i++) {
+        final Solver solver = solvers.get(i);
+        final List<String> chunk = new ArrayList<>();
+        for (BooleanFormula predicate : predicates.subList(start, Math.min(start + chunkSize, predicates.size()))) {
+          chunk.add(fmgr.dumpFormula(predicate).toString());
+        }
+        Future<byte[]> future = completionService.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws SolverException, InterruptedException {
+            return computePredicateValues(solver, notifier, formula, chunk);
+          }
+        });
+        positions.put(future, start);
+      }
+
+      byte[] result = new byte[predicates.size()];
+      for (int i = 0; i < positions.size(); i++) {
+        Future<byte[]> future = completionService.take();
+        byte[] values = future.get();
+        System.arraycopy(values, 0, result, positions.get(future), values.length);
+      }
+      successful = true;
+      return result;
+
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      Throwables.propagateIfPossible(t, SolverException.class, InterruptedException.class);
+      throw new AssertionError("Unexpected checked exception", t);
+
+    } finally {
+      if (!successful) {
+        // if something failed, the other solvers should not continue,
+        // interrupting the threads does not stop the native solvers
+        workerShutdown.requestShutdown("Parallel cartesian abstraction failed");
+      }
+    }
+  }
+
+  private static byte[] computePredicateValues(Solver solver, ShutdownNotifier notifier,
+      String formula, List<String> predicates) throws SolverException, InterruptedException {
+    FormulaManagerView localFmgr = solver.getFormulaManager();
+    BooleanFormulaManagerView localBfmgr = localFmgr.getBooleanFormulaManager();
+    byte[] result = new byte[predicates.size()];
+
+    try (ProverEnvironment prover = solver.newProverEnvironment()) {
+      prover.push(localFmgr.parse(formula));
+
+      for (int i = 0; i < predicates.size(); i++) {
+        notifier.shutdownIfNecessary();
+        BooleanFormula predTrue = localFmgr.parse(predicates.get(i));
+        BooleanFormula predFalse = localBfmgr.not(predTrue);
+
+        prover.push(predFalse);
+        boolean isTrue = prover.isUnsat();
+        prover.pop();
+
+        if (isTrue) {
+          result[i] = 1;
+        } else {
+          prover.push(predTrue);
+          boolean isFalse = prover.isUnsat();
+          prover.pop();
+
+          result[i] = (byte) (isFalse ? -1 : 0);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Stops the running queries and closes the solvers.
+   */
+  @Override
+  public void close() throws Exception {
+    workerShutdown.requestShutdown("Parallel cartesian abstraction is closed");
+    executor.shutdownNow();
+    if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      // a solver, which is still used, must not be closed
+      logger.log(Level.WARNING, "Solvers of parallel cartesian abstraction did not terminate, they are not closed");
+      return;
+    }
+    for (Solver solver : solvers) {
+      solver.close();
+    }
+    solvers.clear();
+  }
+}
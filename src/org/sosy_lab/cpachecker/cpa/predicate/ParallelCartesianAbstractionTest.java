@@ -0,0 +1,112 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.ShutdownNotifier;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.util.predicates.smt.BooleanFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.IntegerFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
+import org.sosy_lab.solver.SolverException;
+import org.sosy_lab.solver.api.BooleanFormula;
+import org.sosy_lab.solver.api.NumeralFormula.IntegerFormula;
+
+import com.google.common.collect.ImmutableList;
+
+public class ParallelCartesianAbstractionTest {
+
+  private final Configuration config = Configuration.defaultConfiguration();
+  private final LogManager logger = TestLogManager.getInstance();
+  private final ShutdownNotifier notifier = ShutdownNotifier.createDummy();
+
+  private Solver solver;
+  private FormulaManagerView fmgr;
+  private BooleanFormulaManagerView bfmgr;
+  private IntegerFormulaManagerView imgr;
+
+  @Before
+  public void setUp() throws Exception {
+    solver = Solver.create(config, logger, notifier);
+    fmgr = solver.getFormulaManager();
+    bfmgr = fmgr.getBooleanFormulaManager();
+    imgr = fmgr.getIntegerFormulaManager();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    solver.close();
+  }
+
+  @Test
+  public void testParallelEqualsSequential() throws Exception {
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula z = imgr.makeVariable("z");
+    // x = 5 & y > x
+    BooleanFormula f = bfmgr.and(imgr.equal(x, imgr.makeNumber(5)), imgr.greaterThan(y, x));
+    List<BooleanFormula> predicates = ImmutableList.of(
+        imgr.equal(x, imgr.makeNumber(5)),
+        imgr.greaterThan(x, imgr.makeNumber(10)),
+        imgr.greaterThan(y, imgr.makeNumber(3)),
+        imgr.equal(y, imgr.makeNumber(7)),
+        imgr.lessThan(x, y),
+        imgr.lessThan(y, imgr.makeNumber(0)),
+        imgr.equal(z, imgr.makeNumber(1)));
+
+    byte[] expected = computeSequentially(f, predicates);
+    assertThat(expected).isEqualTo(new byte[] {1, -1, 1, 0, 1, -1, 0});
+
+    // more predicates than solvers and chunks of different size
+    try (ParallelCartesianAbstraction parallel = new ParallelCartesianAbstraction(3, fmgr, config, logger, notifier)) {
+      assertThat(parallel.computePredicateValues(f, predicates)).isEqualTo(expected);
+      // the solvers are reused for the next abstraction
+      assertThat(parallel.computePredicateValues(f, predicates.subList(2, 4)))
+          .isEqualTo(new byte[] {expected[2], expected[3]});
+    }
+  }
+
+  private byte[] computeSequentially(BooleanFormula f, List<BooleanFormula> predicates)
+      throws SolverException, InterruptedException {
+    byte[] result = new byte[predicates.size()];
+    for (int i = 0; i < predicates.size(); i++) {
+      BooleanFormula predicate = predicates.get(i);
+      if (solver.isUnsat(bfmgr.and(f, bfmgr.not(predicate)))) {
+        result[i] = 1;
+      } else if (solver.isUnsat(bfmgr.and(f, predicate))) {
+        result[i] = -1;
+      }
+    }
+    return result;
+  }
+}
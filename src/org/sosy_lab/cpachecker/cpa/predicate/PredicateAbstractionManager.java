@@ -27,6 +27,7 @@ import static com.google.common.base.Predicates.*;
 import static com.google.common.collect.FluentIterable.from;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
@@ -34,7 +35,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -81,6 +81,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -114,6 +115,11 @@ public class PredicateAbstractionManager {
 
     public long allSatCount = 0;
     public int maxAllSatCount = 0;
+
+    public int numReusedProverFormulas = 0; // formulas, which were asserted for the previous abstraction
+    public int numPushedProverFormulas = 0;
+
+    public int numParallelAbstractions = 0;
   }
 
   final Stats stats = new Stats();
@@ -159,6 +165,27 @@ public class PredicateAbstractionManager {
   @Option(secure=true, name = "abs.useCache", description = "use caching of abstractions")
   private boolean useCache = true;
 
+  @Option(secure=true, name = "abstraction.reuseProver",
+      description = "keep one prover environment for all abstractions and reuse the formulas, "
+          + "which were asserted for the previous abstraction. "
+          + "The prover stays open while other queries are solved, "
+          + "so this is supported only by the solvers MATHSAT5, Z3 and PRINCESS")
+  private boolean reuseProver = false;
+
+  @Option(secure=true, name = "abstraction.parallelThreads",
+      description = "number of additional solvers, which check the predicates of cartesian abstraction "
+          + "in parallel (0 disables parallel abstraction)")
+  private int parallelAbstractionThreads = 0;
+
+  @Option(secure=true, name = "abstraction.parallelThreshold",
+      description = "minimal number of predicates, which are checked in parallel")
+  private int parallelAbstractionThreshold = 16;
+
+  @Option(secure=true, name = "abs.maxCacheSize",
+      description = "maximal number of entries in each abstraction cache, 0 means unbounded. "
+          + "If a cache is full, the cheapest of the least recently used entries is evicted.")
+  private int maxCacheSize = 0;
+
   @Option(secure=true, name="refinement.splitItpAtoms",
       description="split each arithmetic equality into two inequalities when extracting predicates from interpolants")
   private boolean splitItpAtoms = false;
@@ -175,20 +202,24 @@ public class PredicateAbstractionManager {
 
   private boolean abstractionReuseDisabledBecauseOfAmbiguity = false;
 
-  private final Map<Pair<BooleanFormula, ImmutableSet<AbstractionPredicate>>, AbstractionFormula> abstractionCache;
+  private final BoundedCache<Pair<BooleanFormula, ImmutableSet<AbstractionPredicate>>, AbstractionFormula> abstractionCache;
 
   // Cache for satisfiability queries: if formula is contained, it is unsat
-  private final Set<BooleanFormula> unsatisfiabilityCache;
+  private final BoundedCache<BooleanFormula, Boolean> unsatisfiabilityCache;
 
   //cache for cartesian abstraction queries. For each predicate, the values
   // are -1: predicate is false, 0: predicate is don't care,
   // 1: predicate is true
-  private final Map<Pair<BooleanFormula, AbstractionPredicate>, Byte> cartesianAbstractionCache;
+  private final BoundedCache<Pair<BooleanFormula, AbstractionPredicate>, Byte> cartesianAbstractionCache;
 
   private final BooleanFormulaManagerView bfmgr;
 
   private final PredicateAbstractionsStorage abstractionStorage;
 
+  private final ProverStack proverStack;
+
+  private final ParallelCartesianAbstraction parallelAbstraction;
+
   public PredicateAbstractionManager(
       AbstractionManager pAmgr,
       FormulaManagerView pFmgr,
@@ -218,19 +249,38 @@ public class PredicateAbstractionManager {
     }
 
     if (useCache) {
-      abstractionCache = new HashMap<>();
-      unsatisfiabilityCache = new HashSet<>();
+      abstractionCache = new BoundedCache<>(maxCacheSize);
+      unsatisfiabilityCache = new BoundedCache<>(maxCacheSize);
     } else {
       abstractionCache = null;
       unsatisfiabilityCache = null;
     }
 
     if (useCache && (abstractionType != AbstractionType.BOOLEAN)) {
-      cartesianAbstractionCache = new HashMap<>();
+      cartesianAbstractionCache = new BoundedCache<>(maxCacheSize);
     } else {
       cartesianAbstractionCache = null;
     }
 
+    if (reuseProver) {
+      if (!ProverStack.isSupported(solver.getSolverName())) {
+        throw new InvalidConfigurationException("Solver " + solver.getSolverName()
+            + " does not support several prover environments at the same time, "
+            + "which is necessary for cpa.predicate.abstraction.reuseProver");
+      }
+      proverStack = new ProverStack(solver);
+    } else {
+      proverStack = null;
+    }
+
+    if (parallelAbstractionThreads > 0 && abstractionType != AbstractionType.BOOLEAN
+        && abstractionType != AbstractionType.ELIMINATION) {
+      parallelAbstraction = new ParallelCartesianAbstraction(parallelAbstractionThreads, fmgr,
+          config, logger, shutdownNotifier);
+    } else {
+      parallelAbstraction = null;
+    }
+
     abstractionStorage = new PredicateAbstractionsStorage(reuseAbstractionsFrom, logger, fmgr, null);
     SSAMap extractionSsa = SSAMap.emptySSAMap().withDefault(1);
     for (AbstractionNode an : abstractionStorage.getAbstractions().values()) {
@@ -239,12 +289,35 @@ public class PredicateAbstractionManager {
     }
   }
 
+  /**
+   * Releases the resources of the solvers, which are kept between abstractions.
+   * Has to be called before the solver is closed.
+   */
+  public void close() throws Exception {
+    if (proverStack != null) {
+      proverStack.reset();
+    }
+    if (parallelAbstraction != null) {
+      parallelAbstraction.close();
+    }
+  }
+
   public void clear() {
     if (useCache) {
       abstractionCache.clear();
       unsatisfiabilityCache.clear();
     }
   }
+
+  void printCacheStatistics(PrintStream out) {
+    if (useCache) {
+      out.println("  Abstraction cache:               " + abstractionCache);
+      out.println("  Unsatisfiability cache:          " + unsatisfiabilityCache);
+      if (cartesianAbstractionCache != null) {
+        out.println("  Cartesian abstraction cache:     " + cartesianAbstractionCache);
+      }
+    }
+  }
   /**
    * Compute an abstraction of the conjunction of an AbstractionFormula and
    * a PathFormula. The AbstractionFormula will be used in its instantiated form,
@@ -268,6 +341,8 @@ public class PredicateAbstractionManager {
     BooleanFormula absFormula = abstractionFormula.asInstantiatedFormula();
     BooleanFormula symbFormula = buildFormula(pathFormula.getFormula());
     BooleanFormula f = bfmgr.and(absFormula, symbFormula);
+    // f without the old abstraction, as they are asserted separately for reuse of the prover
+    BooleanFormula blockFormula = symbFormula;
     final SSAMap ssa = pathFormula.getSsa();
 
     ImmutableSet<AbstractionPredicate> predicates = getRelevantPredicates(pPredicates, f, ssa, location);
@@ -277,6 +352,7 @@ public class PredicateAbstractionManager {
         BooleanFormula bitwiseAxioms = fmgr.getBitwiseAxioms(predicate.getSymbolicAtom());
         if (!bfmgr.isTrue(bitwiseAxioms)) {
           f = bfmgr.and(f, bitwiseAxioms);
+          blockFormula = bfmgr.and(blockFormula, bitwiseAxioms);
 
           logger.log(Level.ALL, "DEBUG_3", "ADDED BITWISE AXIOMS:", bitwiseAxioms);
         }
@@ -328,8 +404,7 @@ public class PredicateAbstractionManager {
         return result;
       }
 
-      boolean unsatisfiable = unsatisfiabilityCache.contains(symbFormula)
-                            || unsatisfiabilityCache.contains(f);
+      boolean unsatisfiable = unsatisfiabilityCache.containsAnyKey(symbFormula, f);
       if (unsatisfiable) {
         // block is infeasible
         logger.log(Level.FINEST, "Block feasibility of abstraction", stats.numCallsAbstraction, "was cached and is false.");
@@ -361,8 +436,19 @@ public class PredicateAbstractionManager {
                      .toSet();
       stats.trivialPredicatesTime.stop();
     }
-    try (ProverEnvironment thmProver = solver.newProverEnvironment()) {
-      thmProver.push(f);
+    ProverEnvironment thmProver = null;
+    boolean successful = false;
+    try {
+      if (proverStack != null) {
+        // successive abstractions often start from the same abstraction
+        int reused = proverStack.assertFormulas(ImmutableList.of(absFormula, blockFormula));
+        stats.numReusedProverFormulas += reused;
+        stats.numPushedProverFormulas += 2 - reused;
+        thmProver = proverStack.getProver();
+      } else {
+        thmProver = solver.newProverEnvironment();
+        thmProver.push(f);
+      }
 
       if (predicates.isEmpty() && (abstractionType != AbstractionType.ELIMINATION)) {
         stats.numSatCheckAbstractions++;
@@ -422,19 +508,31 @@ public class PredicateAbstractionManager {
           // buildBooleanAbstraction() does not clean up thmProver, so do not use it here.
         }
       }
+      successful = true;
+    } finally {
+      if (proverStack == null) {
+        if (thmProver != null) {
+          thmProver.close();
+        }
+      } else if (!successful) {
+        // the levels of the prover are unknown
+        proverStack.reset();
+      }
     }
     AbstractionFormula result = makeAbstractionFormula(abs, ssa, pathFormula);
+
+    long abstractionTime = TimeSpan.sum(stats.abstractionSolveTime.getLengthOfLastInterval(),
+                                        stats.abstractionEnumTime.getLengthOfLastOuterInterval())
+                                   .asMillis();
+
     if (useCache) {
-      abstractionCache.put(absKey, result);
+      // the time is used as cost of the entry, the cheap ones are evicted first
+      abstractionCache.put(absKey, result, abstractionTime);
 
       if (result.isFalse()) {
-        unsatisfiabilityCache.add(f);
+        unsatisfiabilityCache.put(f, Boolean.TRUE, abstractionTime);
       }
     }
-
-    long abstractionTime = TimeSpan.sum(stats.abstractionSolveTime.getLengthOfLastInterval(),
-                                        stats.abstractionEnumTime.getLengthOfLastOuterInterval())
-                                   .asMillis();
     logger.log(Level.FINEST, "Computing abstraction took", abstractionTime, "ms");
     logger.log(Level.ALL, "Abstraction result is", result.asFormula());
 
@@ -761,27 +859,27 @@ public class PredicateAbstractionManager {
     try {
       Region absbdd = rmgr.makeTrue();
 
+      Map<AbstractionPredicate, Byte> parallelValues = ImmutableMap.of();
+      if (parallelAbstraction != null) {
+        parallelValues = computePredicateValuesInParallel(f, ssa, predicates);
+      }
+
       // check whether each of the predicate is implied in the next state...
 
       for (AbstractionPredicate p : predicates) {
         Pair<BooleanFormula, AbstractionPredicate> cacheKey = Pair.of(f, p);
-        if (useCache && cartesianAbstractionCache.containsKey(cacheKey)) {
-          byte predVal = cartesianAbstractionCache.get(cacheKey);
+        Byte cachedPredVal = useCache ? cartesianAbstractionCache.get(cacheKey) : null;
+        if (cachedPredVal != null) {
           stats.numCartesianAbsPredicatesCached++;
+          absbdd = addPredicateValue(absbdd, p, cachedPredVal);
 
-          stats.abstractionEnumTime.getCurentInnerTimer().start();
-          Region v = p.getAbstractVariable();
-          if (predVal == -1) { // pred is false
-            stats.numCartesianAbsPredicates++;
-            v = rmgr.makeNot(v);
-            absbdd = rmgr.makeAnd(absbdd, v);
-          } else if (predVal == 1) { // pred is true
-            stats.numCartesianAbsPredicates++;
-            absbdd = rmgr.makeAnd(absbdd, v);
-          } else {
-            assert predVal == 0 : "predicate value is neither false, true, nor unknown";
+        } else if (parallelValues.containsKey(p)) {
+          byte predVal = parallelValues.get(p);
+          absbdd = addPredicateValue(absbdd, p, predVal);
+
+          if (useCache) {
+            cartesianAbstractionCache.put(cacheKey, predVal, 0);
           }
-          stats.abstractionEnumTime.getCurentInnerTimer().stop();
 
         } else {
           logger.log(Level.ALL, "DEBUG_1",
@@ -826,7 +924,7 @@ public class PredicateAbstractionManager {
           }
 
           if (useCache) {
-            cartesianAbstractionCache.put(cacheKey, predVal);
+            cartesianAbstractionCache.put(cacheKey, predVal, 0);
           }
         }
       }
@@ -838,6 +936,54 @@ public class PredicateAbstractionManager {
     }
   }
 
+  private Region addPredicateValue(Region absbdd, AbstractionPredicate p, byte predVal) {
+    stats.abstractionEnumTime.getCurentInnerTimer().start();
+    try {
+      Region v = p.getAbstractVariable();
+      if (predVal == -1) { // pred is false
+        stats.numCartesianAbsPredicates++;
+        v = rmgr.makeNot(v);
+        return rmgr.makeAnd(absbdd, v);
+      } else if (predVal == 1) { // pred is true
+        stats.numCartesianAbsPredicates++;
+        return rmgr.makeAnd(absbdd, v);
+      } else {
+        assert predVal == 0 : "predicate value is neither false, true, nor unknown";
+        return absbdd;
+      }
+    } finally {
+      stats.abstractionEnumTime.getCurentInnerTimer().stop();
+    }
+  }
+
+  /**
+   * Checks the predicates, which are not cached, with several solvers in parallel,
+   * if there are enough of them.
+   * @return the values of the checked predicates, as in the cartesian abstraction cache
+   */
+  private Map<AbstractionPredicate, Byte> computePredicateValuesInParallel(final BooleanFormula f,
+      final SSAMap ssa, Collection<AbstractionPredicate> predicates) throws SolverException, InterruptedException {
+    List<AbstractionPredicate> uncachedPredicates = new ArrayList<>();
+    List<BooleanFormula> instantiatedPredicates = new ArrayList<>();
+    for (AbstractionPredicate p : predicates) {
+      if (!useCache || !cartesianAbstractionCache.peek(Pair.of(f, p))) {
+        uncachedPredicates.add(p);
+        instantiatedPredicates.add(fmgr.instantiate(p.getSymbolicAtom(), ssa));
+      }
+    }
+    if (uncachedPredicates.size() < parallelAbstractionThreshold) {
+      return ImmutableMap.of();
+    }
+
+    stats.numParallelAbstractions++;
+    byte[] values = parallelAbstraction.computePredicateValues(f, instantiatedPredicates);
+    Map<AbstractionPredicate, Byte> result = new HashMap<>();
+    for (int i = 0; i < values.length; i++) {
+      result.put(uncachedPredicates.get(i), values[i]);
+    }
+    return result;
+  }
+
   public BooleanFormula buildFormula(BooleanFormula symbFormula) {
 
     if (fmgr.useBitwiseAxioms()) {
@@ -881,7 +1027,10 @@ public class PredicateAbstractionManager {
     Region result = thmProver.allSat(callback, predVars);
 
     // pop() is actually costly sometimes, and we delete the environment anyway
-    // thmProver.pop();
+    if (proverStack != null) {
+      // unless it is reused
+      thmProver.pop();
+    }
 
     // update statistics
     int numModels = callback.getCount();
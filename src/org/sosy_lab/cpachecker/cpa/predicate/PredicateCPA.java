@@ -314,6 +314,7 @@ public class PredicateCPA implements ConfigurableProgramAnalysis, StatisticsProv
 
   @Override
   public void close() throws Exception {
+    predicateManager.close();
     solver.close();
   }
 
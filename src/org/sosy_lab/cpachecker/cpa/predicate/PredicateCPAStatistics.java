@@ -276,8 +276,15 @@ class PredicateCPAStatistics extends AbstractStatistics {
       out.println("  Times precision was empty:       " + valueWithPercentage(as.numSymbolicAbstractions, as.numCallsAbstraction));
       out.println("  Times precision was {false}:     " + valueWithPercentage(as.numSatCheckAbstractions, as.numCallsAbstraction));
       out.println("  Times result was cached:         " + valueWithPercentage(as.numCallsAbstractionCached, as.numCallsAbstraction));
+      amgr.printCacheStatistics(out);
       out.println("  Times cartesian abs was used:    " + valueWithPercentage(as.cartesianAbstractionTime.getNumberOfIntervals(), as.numCallsAbstraction));
       out.println("  Times boolean abs was used:      " + valueWithPercentage(as.booleanAbstractionTime.getNumberOfIntervals(), as.numCallsAbstraction));
+      if (as.numParallelAbstractions > 0) {
+        out.println("  Times parallel abs was used:     " + valueWithPercentage(as.numParallelAbstractions, as.numCallsAbstraction));
+      }
+      if (as.numReusedProverFormulas + as.numPushedProverFormulas > 0) {
+        out.println("  Reused asserted formulas:        " + valueWithPercentage(as.numReusedProverFormulas, as.numReusedProverFormulas + as.numPushedProverFormulas));
+      }
       out.println("  Times result was 'false':        " + valueWithPercentage(prec.numAbstractionsFalse, prec.numAbstractions));
     }
 
@@ -302,6 +309,9 @@ class PredicateCPAStatistics extends AbstractStatistics {
     out.println("Number of SMT sat checks:          " + solver.satChecks);
     out.println("  trivial:                         " + solver.trivialSatChecks);
     out.println("  cached:                          " + solver.cachedSatChecks);
+    if (solver.persistentCachedSatChecks > 0) {
+      out.println("  cached in persistent cache:      " + solver.persistentCachedSatChecks);
+    }
     out.println();
     out.println("Max ABE block size:                       " + prec.maxBlockSize);
     out.println("Number of predicates discovered:          " + allDistinctPreds);
@@ -0,0 +1,117 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
+import org.sosy_lab.solver.SolverContextFactory.Solvers;
+import org.sosy_lab.solver.api.BooleanFormula;
+import org.sosy_lab.solver.api.ProverEnvironment;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Sets;
+
+/**
+ * A long-living prover environment, which keeps the asserted formulas between queries.
+ * For a new query only the formulas, which differ from the ones of the previous query,
+ * are popped and pushed again.
+ * The prover stays open while other prover environments of the same solver are used,
+ * so only solvers with independent stacks are supported, see {@link #isSupported(Solvers)}.
+ * The prover has to be closed with {@link #reset()}, before the solver is closed.
+ */
+class ProverStack {
+
+  // the solvers, which keep an independent stack for each prover environment
+  private static final Set<Solvers> SUPPORTED_SOLVERS =
+      Sets.immutableEnumSet(Solvers.MATHSAT5, Solvers.Z3, Solvers.PRINCESS);
+
+  private final Supplier<ProverEnvironment> proverFactory;
+  private ProverEnvironment prover = null;
+  // the formulas on the stack of the prover, one per level
+  private final List<BooleanFormula> stack = new ArrayList<>();
+
+  ProverStack(final Solver pSolver) {
+    this(new Supplier<ProverEnvironment>() {
+      @Override
+      public ProverEnvironment get() {
+        return pSolver.newProverEnvironment();
+      }
+    });
+  }
+
+  @VisibleForTesting
+  ProverStack(Supplier<ProverEnvironment> pProverFactory) {
+    proverFactory = pProverFactory;
+  }
+
+  static boolean isSupported(Solvers solver) {
+    return SUPPORTED_SOLVERS.contains(solver);
+  }
+
+  /**
+   * Prepares the prover, so that it contains exactly the given formulas, one per level.
+   * The queries must not change the levels of the returned prover.
+   *
+   * @return the number of formulas, which were already asserted
+   */
+  int assertFormulas(List<BooleanFormula> formulas) {
+    if (prover == null) {
+      prover = proverFactory.get();
+    }
+    int common = 0;
+    while (common < stack.size() && common < formulas.size()
+        && stack.get(common).equals(formulas.get(common))) {
+      common++;
+    }
+    while (stack.size() > common) {
+      prover.pop();
+      stack.remove(stack.size() - 1);
+    }
+    for (BooleanFormula f : formulas.subList(common, formulas.size())) {
+      prover.push(f);
+      stack.add(f);
+    }
+    return common;
+  }
+
+  ProverEnvironment getProver() {
+    return prover;
+  }
+
+  /**
+   * Drops the prover, for example if a query failed and the levels of the prover are unknown,
+   * or if the analysis is finished.
+   */
+  void reset() {
+    if (prover != null) {
+      prover.close();
+      prover = null;
+    }
+    stack.clear();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.sosy_lab.solver.SolverContextFactory.Solvers;
+import org.sosy_lab.solver.api.BooleanFormula;
+import org.sosy_lab.solver.api.ProverEnvironment;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+public class ProverStackTest {
+
+  private final BooleanFormula a = Mockito.mock(BooleanFormula.class);
+  private final BooleanFormula b = Mockito.mock(BooleanFormula.class);
+  private final BooleanFormula c = Mockito.mock(BooleanFormula.class);
+
+  private int createdProvers;
+  private ProverEnvironment prover;
+  private ProverStack stack;
+
+  @Before
+  public void setUp() {
+    createdProvers = 0;
+    stack = new ProverStack(new Supplier<ProverEnvironment>() {
+      @Override
+      public ProverEnvironment get() {
+        createdProvers++;
+        prover = Mockito.mock(ProverEnvironment.class);
+        return prover;
+      }
+    });
+  }
+
+  @Test
+  public void testCommonPrefixIsReused() {
+    assertThat(stack.assertFormulas(ImmutableList.of(a, b))).isEqualTo(0);
+    ProverEnvironment first = prover;
+    assertThat(stack.getProver()).isSameAs(first);
+
+    assertThat(stack.assertFormulas(ImmutableList.of(a, c))).isEqualTo(1);
+    assertThat(stack.assertFormulas(ImmutableList.of(a, c))).isEqualTo(2);
+    assertThat(stack.assertFormulas(ImmutableList.<BooleanFormula>of())).isEqualTo(0);
+
+    InOrder order = Mockito.inOrder(first);
+    order.verify(first).push(a);
+    order.verify(first).push(b);
+    order.verify(first).pop();
+    order.verify(first).push(c);
+    order.verify(first, Mockito.times(2)).pop();
+    Mockito.verifyNoMoreInteractions(first);
+    assertThat(createdProvers).isEqualTo(1);
+  }
+
+  @Test
+  public void testResetClosesProver() {
+    stack.assertFormulas(ImmutableList.of(a, b));
+    ProverEnvironment first = prover;
+    stack.reset();
+    Mockito.verify(first).close();
+    assertThat(stack.getProver()).isNull();
+
+    // nothing is reused from the closed prover
+    assertThat(stack.assertFormulas(ImmutableList.of(a, b))).isEqualTo(0);
+    assertThat(createdProvers).isEqualTo(2);
+    Mockito.verify(prover).push(a);
+    Mockito.verify(prover).push(b);
+  }
+
+  @Test
+  public void testResetWithoutProver() {
+    stack.reset();
+    assertThat(createdProvers).isEqualTo(0);
+  }
+
+  @Test
+  public void testSupportedSolvers() {
+    assertThat(ProverStack.isSupported(Solvers.MATHSAT5)).isTrue();
+    assertThat(ProverStack.isSupported(Solvers.SMTINTERPOL)).isFalse();
+  }
+}
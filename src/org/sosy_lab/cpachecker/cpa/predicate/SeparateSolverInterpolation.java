@@ -0,0 +1,163 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.cpachecker.core.AnalysisDirection;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+import org.sosy_lab.cpachecker.exceptions.CPAException;
+import org.sosy_lab.cpachecker.util.predicates.interpolation.CounterexampleTraceInfo;
+import org.sosy_lab.cpachecker.util.predicates.interpolation.InterpolationManager;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormulaManagerImpl;
+import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
+import org.sosy_lab.solver.api.BooleanFormula;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Computes interpolants for a refinement in a separate solver,
+ * so several refinements may interpolate at the same time.
+ *
+ * All other work of the refinements uses the main solver and is guarded by a common lock,
+ * which is taken once by the refining thread at the top of its work. The formulas are copied
+ * into the separate solver as SMT-LIB2 strings under the lock, the lock is released while
+ * the separate solver works, and the interpolants are copied back after the lock is acquired again.
+ *
+ * The solver is created on demand, kept for the whole analysis and released by {@link #close()}.
+ */
+public class SeparateSolverInterpolation implements AutoCloseable {
+
+  private final BAMPredicateCPA predicateCpa;
+  private final FormulaManagerView mainFmgr;
+  private final ReentrantLock lock;
+
+  private Solver solver = null;
+  private InterpolationManager imgr = null;
+
+  public SeparateSolverInterpolation(BAMPredicateCPA pPredicateCpa, ReentrantLock pLock) {
+    predicateCpa = pPredicateCpa;
+    mainFmgr = pPredicateCpa.getSolver().getFormulaManager();
+    lock = pLock;
+  }
+
+  /**
+   * Checks the formulas of a path in the separate solver.
+   * The current thread has to hold the lock exactly once, as it is released for the solver call
+   * and nobody else may rely on it meanwhile.
+   * The formulas are checked without the branching information,
+   * so a satisfiable result does not mean, that the path is feasible.
+   *
+   * @param abstractionStates the abstraction states of the path, one for each block formula
+   * @param formulas the block formulas of the path
+   * @return the interpolants in the main solver, if the formulas are unsatisfiable
+   */
+  public Optional<CounterexampleTraceInfo> buildInfeasibleTrace(List<ARGState> abstractionStates,
+      List<BooleanFormula> formulas) throws CPAException, InterruptedException {
+    checkState(lock.getHoldCount() == 1, "The lock for the refinement has to be held exactly once");
+    // the locations of the states are read by tree interpolation strategies, they are not changed by other threads
+    List<AbstractState> states = ImmutableList.<AbstractState>copyOf(abstractionStates);
+
+    List<String> dumpedFormulas = new ArrayList<>(formulas.size());
+    for (BooleanFormula f : formulas) {
+      dumpedFormulas.add(mainFmgr.dumpFormula(f).toString());
+    }
+    InterpolationManager manager = getInterpolationManager();
+
+    List<String> dumpedInterpolants;
+    lock.unlock();
+    try {
+      FormulaManagerView fmgr = solver.getFormulaManager();
+      List<BooleanFormula> parsedFormulas = new ArrayList<>(dumpedFormulas.size());
+      for (String f : dumpedFormulas) {
+        parsedFormulas.add(fmgr.parse(f));
+      }
+      CounterexampleTraceInfo cex = manager.buildCounterexampleTrace(parsedFormulas,
+          states, Collections.<ARGState>emptySet(), true);
+      if (!cex.isSpurious()) {
+        return Optional.absent();
+      }
+      dumpedInterpolants = new ArrayList<>(cex.getInterpolants().size());
+      for (BooleanFormula itp : cex.getInterpolants()) {
+        dumpedInterpolants.add(fmgr.dumpFormula(itp).toString());
+      }
+    } finally {
+      lock.lock();
+    }
+
+    List<BooleanFormula> interpolants = new ArrayList<>(dumpedInterpolants.size());
+    for (String itp : dumpedInterpolants) {
+      interpolants.add(mainFmgr.parse(itp));
+    }
+    return Optional.of(CounterexampleTraceInfo.infeasible(interpolants));
+  }
+
+  private InterpolationManager getInterpolationManager() throws CPAException {
+    if (imgr == null) {
+      try {
+        solver = Solver.create(predicateCpa.getConfiguration(), predicateCpa.getLogger(),
+            predicateCpa.getShutdownNotifier());
+        PathFormulaManagerImpl pfmgr = new PathFormulaManagerImpl(solver.getFormulaManager(),
+            predicateCpa.getConfiguration(), predicateCpa.getLogger(), predicateCpa.getShutdownNotifier(),
+            predicateCpa.getCfa(), AnalysisDirection.FORWARD);
+        imgr = new InterpolationManager(pfmgr, solver,
+            predicateCpa.getCfa().getLoopStructure(),
+            predicateCpa.getCfa().getVarClassification(),
+            predicateCpa.getConfiguration(),
+            predicateCpa.getShutdownNotifier(),
+            predicateCpa.getLogger());
+      } catch (InvalidConfigurationException e) {
+        // the same configuration was already accepted by the main solver
+        throw new CPAException("Could not create a separate solver for interpolation", e);
+      }
+    }
+    return imgr;
+  }
+
+  /**
+   * Releases the separate solver at the end of the analysis.
+   */
+  @Override
+  public void close() {
+    if (solver != null) {
+      imgr = null;
+      try {
+        solver.close();
+      } catch (Exception e) {
+        predicateCpa.getLogger().logUserException(Level.WARNING, e, "Could not close the separate solver");
+      }
+      solver = null;
+    }
+  }
+}
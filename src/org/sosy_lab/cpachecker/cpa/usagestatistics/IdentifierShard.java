@@ -0,0 +1,81 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.usagestatistics;
+
+import java.util.Set;
+
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
+
+/**
+ * Selects the identifiers, which are analyzed by the current process,
+ * if the unsafes of one program are checked by several independent processes.
+ * Every process uses the same configuration with different shard index,
+ * the results are merged by scripts/merge-unsafe-rawdata.pl
+ */
+@Options(prefix="cpa.usagestatistics.sharding")
+public class IdentifierShard {
+  @Option(description = "number of processes, which share the identifiers")
+  private int shards = 1;
+
+  @Option(description = "index of the current process (from 0 to shards - 1)")
+  private int shardIndex = 0;
+
+  @Option(description = "analyze only variables with the given name prefixes instead of partitioning by hash, "
+      + "the prefixes of different processes must not overlap, otherwise the variables are analyzed twice")
+  private Set<String> byNamePrefix = null;
+
+  public IdentifierShard(Configuration pConfig) throws InvalidConfigurationException {
+    pConfig.inject(this);
+    if (shards <= 0 || shardIndex < 0 || shardIndex >= shards) {
+      throw new InvalidConfigurationException("Shard index " + shardIndex + " is not within " + shards + " shards");
+    }
+    if (byNamePrefix != null && shards != 1) {
+      throw new InvalidConfigurationException("The partitioning by name prefixes can not be used together with "
+          + shards + " shards, set only one of the options");
+    }
+  }
+
+  public boolean contains(SingleIdentifier id) {
+    String varName = id.getName();
+
+    if (byNamePrefix != null) {
+      for (String prefix : byNamePrefix) {
+        if (varName.startsWith(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (shards == 1) {
+      return true;
+    }
+    //String.hashCode() is specified, so all processes compute the same partitioning
+    int hash = varName.hashCode() % shards;
+    return (hash < 0 ? hash + shards : hash) == shardIndex;
+  }
+}
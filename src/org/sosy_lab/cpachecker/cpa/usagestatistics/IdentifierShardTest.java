@@ -0,0 +1,109 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.usagestatistics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.cpachecker.cfa.types.c.CNumericTypes;
+import org.sosy_lab.cpachecker.util.identifiers.GlobalVariableIdentifier;
+import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
+
+public class IdentifierShardTest {
+
+  //"polygenelubricants".hashCode() is Integer.MIN_VALUE
+  private static final String[] NAMES = {"polygenelubricants", "global_counter", "mutex_lock", "aaaaaaaaaaa",
+      "zzzzzzz", "a", "", "dev_list"};
+
+  private static IdentifierShard shard(int shards, int index) throws InvalidConfigurationException {
+    return new IdentifierShard(Configuration.builder()
+        .setOption("cpa.usagestatistics.sharding.shards", Integer.toString(shards))
+        .setOption("cpa.usagestatistics.sharding.shardIndex", Integer.toString(index))
+        .build());
+  }
+
+  private static SingleIdentifier id(String name) {
+    return new GlobalVariableIdentifier(name, CNumericTypes.INT, 0);
+  }
+
+  @Test
+  public void testEveryIdBelongsToOneShard() throws InvalidConfigurationException {
+    int shards = 3;
+    IdentifierShard[] all = new IdentifierShard[shards];
+    for (int i = 0; i < shards; i++) {
+      all[i] = shard(shards, i);
+    }
+    for (String name : NAMES) {
+      int owners = 0;
+      for (IdentifierShard current : all) {
+        if (current.contains(id(name))) {
+          owners++;
+        }
+      }
+      assertThat(owners).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testNegativeHashCode() throws InvalidConfigurationException {
+    assertThat("polygenelubricants".hashCode()).isEqualTo(Integer.MIN_VALUE);
+    assertThat("mutex_lock".hashCode()).isLessThan(0);
+    //Integer.MIN_VALUE % 3 == -2, so the id belongs to the shard 1
+    assertThat(shard(3, 1).contains(id("polygenelubricants"))).isTrue();
+    assertThat(shard(3, 0).contains(id("mutex_lock"))).isTrue();
+  }
+
+  @Test
+  public void testSingleShardContainsAll() throws InvalidConfigurationException {
+    IdentifierShard single = shard(1, 0);
+    for (String name : NAMES) {
+      assertThat(single.contains(id(name))).isTrue();
+    }
+  }
+
+  @Test
+  public void testNamePrefix() throws InvalidConfigurationException {
+    IdentifierShard byPrefix = new IdentifierShard(Configuration.builder()
+        .setOption("cpa.usagestatistics.sharding.byNamePrefix", "mutex_, dev_")
+        .build());
+    assertThat(byPrefix.contains(id("mutex_lock"))).isTrue();
+    assertThat(byPrefix.contains(id("dev_list"))).isTrue();
+    assertThat(byPrefix.contains(id("global_counter"))).isFalse();
+  }
+
+  @Test(expected = InvalidConfigurationException.class)
+  public void testNamePrefixWithShardsIsRejected() throws InvalidConfigurationException {
+    new IdentifierShard(Configuration.builder()
+        .setOption("cpa.usagestatistics.sharding.shards", "2")
+        .setOption("cpa.usagestatistics.sharding.byNamePrefix", "mutex_")
+        .build());
+  }
+
+  @Test(expected = InvalidConfigurationException.class)
+  public void testShardIndexOutOfRange() throws InvalidConfigurationException {
+    shard(2, 2);
+  }
+}
@@ -23,107 +23,143 @@
  */
 package org.sosy_lab.cpachecker.cpa.usagestatistics;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
+import org.sosy_lab.common.collect.PathCopyingPersistentTreeMap;
+import org.sosy_lab.common.collect.PersistentLinkedList;
+import org.sosy_lab.common.collect.PersistentList;
+import org.sosy_lab.common.collect.PersistentSortedMap;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cpa.arg.ARGState;
 import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsState;
 import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsState.LockStatisticsStateBuilder;
 import org.sosy_lab.cpachecker.cpa.lockstatistics.effects.LockEffect;
+import org.sosy_lab.cpachecker.util.Pair;
 import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
 
-import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ImmutableList;
 
-public class TemporaryUsageStorage extends TreeMap<SingleIdentifier, SortedSet<UsageInfo>> {
-  private static final long serialVersionUID = -8932709343923545136L;
+/**
+ * Storage of usages, which is based on persistent maps,
+ * so copies of the storage share the structure with each other.
+ * The usages of one identifier are stored as a persistent sorted map with only keys.
+ */
+public class TemporaryUsageStorage {
 
-  private Set<SingleIdentifier> deeplyCloned = new TreeSet<>();
+  private PersistentSortedMap<SingleIdentifier, PersistentSortedMap<UsageInfo, Boolean>> storage;
 
-  private LinkedListMultimap<SingleIdentifier, UsageInfo> withoutARGState;
+  private PersistentList<UsageInfo> withoutARGState;
 
   private final TemporaryUsageStorage previousStorage;
+  /* If the storage is cleared, all previous ones are also cleared,
+   * as usages are added only into the storage of a new state
+   */
+  private boolean isCleared = false;
 
   public static int totalUsages = 0;
   public static int expandedUsages = 0;
 
   public TemporaryUsageStorage(TemporaryUsageStorage previous) {
-    super(previous);
+    //Nothing is copied, the structure is shared
+    storage = previous.storage;
     //Copy states without ARG to set it later
-    withoutARGState = LinkedListMultimap.create(previous.withoutARGState);
+    withoutARGState = previous.withoutARGState;
     previousStorage = previous;
   }
 
   public TemporaryUsageStorage() {
-    withoutARGState = LinkedListMultimap.create();
+    storage = PathCopyingPersistentTreeMap.of();
+    withoutARGState = PersistentLinkedList.of();
     previousStorage = null;
   }
 
   public boolean add(SingleIdentifier id, UsageInfo info) {
-    SortedSet<UsageInfo> storage = getStorageForId(id);
     if (info.getKeyState() == null) {
-      withoutARGState.put(id, info);
+      withoutARGState = withoutARGState.with(info);
+    }
+    PersistentSortedMap<UsageInfo, Boolean> usages = getUsagesForId(id);
+    if (usages.containsKey(info)) {
+      //The same as for sets, the old usage is not replaced
+      return false;
     }
-    return storage.add(info);
+    storage = storage.putAndCopy(id, usages.putAndCopy(info, Boolean.TRUE));
+    return true;
   }
 
-  @Override
-  public SortedSet<UsageInfo> put(SingleIdentifier id, SortedSet<UsageInfo> list) {
-    deeplyCloned.add(id);
-    return super.put(id, list);
+  public boolean addAll(SingleIdentifier id, Set<UsageInfo> list) {
+    PersistentSortedMap<UsageInfo, Boolean> usages = getUsagesForId(id);
+    PersistentSortedMap<UsageInfo, Boolean> newUsages = addAll(usages, list);
+    if (newUsages == usages) {
+      return false;
+    }
+    storage = storage.putAndCopy(id, newUsages);
+    return true;
   }
 
-  public boolean addAll(SingleIdentifier id, SortedSet<UsageInfo> list) {
-    SortedSet<UsageInfo> storage = getStorageForId(id);
-    return storage.addAll(list);
+  private PersistentSortedMap<UsageInfo, Boolean> addAll(PersistentSortedMap<UsageInfo, Boolean> usages,
+      Set<UsageInfo> list) {
+    for (UsageInfo uinfo : list) {
+      if (!usages.containsKey(uinfo)) {
+        usages = usages.putAndCopy(uinfo, Boolean.TRUE);
+      }
+    }
+    return usages;
   }
 
-  private SortedSet<UsageInfo> getStorageForId(SingleIdentifier id) {
-    if (deeplyCloned.contains(id)) {
-      //List is already cloned
-      assert this.containsKey(id);
-      return this.get(id);
-    } else {
-      deeplyCloned.add(id);
-      SortedSet<UsageInfo> storage;
-      if (this.containsKey(id)) {
-        //clone
-        storage = new TreeSet<>(this.get(id));
-      } else {
-        storage = new TreeSet<>();
-      }
-      this.put(id, storage);
-      return storage;
+  private PersistentSortedMap<UsageInfo, Boolean> getUsagesForId(SingleIdentifier id) {
+    PersistentSortedMap<UsageInfo, Boolean> usages = storage.get(id);
+    if (usages == null) {
+      return PathCopyingPersistentTreeMap.of();
     }
+    return usages;
+  }
+
+  public Set<SingleIdentifier> keySet() {
+    return storage.keySet();
+  }
+
+  public boolean isEmpty() {
+    return storage.isEmpty();
+  }
+
+  public Set<UsageInfo> get(SingleIdentifier id) {
+    PersistentSortedMap<UsageInfo, Boolean> usages = storage.get(id);
+    if (usages == null) {
+      return Collections.emptySet();
+    }
+    return usages.keySet();
+  }
+
+  public boolean containsKey(SingleIdentifier id) {
+    return storage.containsKey(id);
   }
 
   public void setKeyState(ARGState state) {
-    for (UsageInfo uinfo : withoutARGState.values()) {
+    for (UsageInfo uinfo : withoutARGState) {
       uinfo.setKeyState(state);
     }
-    withoutARGState.clear();
+    withoutARGState = PersistentLinkedList.of();
   }
 
-  @Override
   public void clear() {
     clearSets();
     TemporaryUsageStorage previous = previousStorage;
     //We cannot use recursion, due to large callstack and stack overflow exception
-    while (previous != null) {
+    //The rest of the chain was cleared at the previous abstraction, so the walk is not quadratic
+    while (previous != null && !previous.isCleared) {
       previous.clearSets();
       previous = previous.previousStorage;
     }
   }
 
   private void clearSets() {
-    super.clear();
-    deeplyCloned.clear();
-    withoutARGState.clear();
+    storage = PathCopyingPersistentTreeMap.of();
+    withoutARGState = PersistentLinkedList.of();
+    isCleared = true;
   }
 
   public static Timer effectTimer = new Timer();
@@ -132,8 +168,50 @@ public class TemporaryUsageStorage extends TreeMap<SingleIdentifier, SortedSet<U
   public static int effectJoin = 0;
   public static int hitTimes = 0;
   public static int missTimes = 0;
+  public static int expandCacheHits = 0;
+
+  /**
+   * The same function summary is expanded in many places with the same difference in locks,
+   * so the expanded lock states are cached between joins: (effects, reduced state) -> expanded state.
+   * The cache belongs to one analysis and keeps only the recently used states.
+   */
+  public static class ExpandCache {
+    private static final int MAX_SIZE = 100000;
+
+    private final Map<Pair<List<LockEffect>, LockStatisticsState>, LockStatisticsState> cache =
+        new LinkedHashMap<Pair<List<LockEffect>, LockStatisticsState>, LockStatisticsState>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(
+              Map.Entry<Pair<List<LockEffect>, LockStatisticsState>, LockStatisticsState> pEldest) {
+            return size() > MAX_SIZE;
+          }
+        };
+
+    private LockStatisticsState expand(List<LockEffect> effects, LockStatisticsState reducedState) {
+      Pair<List<LockEffect>, LockStatisticsState> key = Pair.of(effects, reducedState);
+      LockStatisticsState expandedState = cache.get(key);
+      if (expandedState == null) {
+        expandedUsages++;
+        LockStatisticsStateBuilder builder = reducedState.builder();
+        for (LockEffect effect : effects) {
+          effect.effect(builder);
+        }
+        expandedState = builder.build();
+        cache.put(key, expandedState);
+      } else {
+        expandCacheHits++;
+      }
+      return expandedState;
+    }
+
+    public int size() {
+      return cache.size();
+    }
+  }
 
-  public void join(TemporaryUsageStorage pRecentUsages, List<LockEffect> effects) {
+  public void join(TemporaryUsageStorage pRecentUsages, List<LockEffect> effects, ExpandCache expandCache) {
 
     if (effects.isEmpty()) {
       emptyJoin++;
@@ -141,43 +219,37 @@ public class TemporaryUsageStorage extends TreeMap<SingleIdentifier, SortedSet<U
       effectJoin++;
     }
 
-    Map<LockStatisticsState, LockStatisticsState> reduceToExpand = new HashMap<>();
+    List<LockEffect> immutableEffects = null;
     for (SingleIdentifier id : pRecentUsages.keySet()) {
-      SortedSet<UsageInfo> otherStorage = pRecentUsages.get(id);
+      PersistentSortedMap<UsageInfo, Boolean> otherStorage = pRecentUsages.storage.get(id);
       totalUsages += otherStorage.size();
       if (effects.isEmpty()) {
         copyTimer.start();
-        if (this.containsKey(id)) {
-          SortedSet<UsageInfo> currentStorage = this.getStorageForId(id);
-          currentStorage.addAll(otherStorage);
-          hitTimes++;
-        } else {
-          //Not deeply cloned
-          super.put(id, otherStorage);
+        PersistentSortedMap<UsageInfo, Boolean> currentStorage = storage.get(id);
+        if (currentStorage == null) {
+          //Just share the other storage
+          storage = storage.putAndCopy(id, otherStorage);
           missTimes++;
+        } else if (currentStorage != otherStorage) {
+          storage = storage.putAndCopy(id, addAll(currentStorage, otherStorage.keySet()));
+          hitTimes++;
         }
         copyTimer.stop();
       } else {
         effectTimer.start();
-        LockStatisticsState currentState;
-        LockStatisticsState expandedState;
-        SortedSet<UsageInfo> result = new TreeSet<>();
-        for (UsageInfo uinfo : otherStorage) {
-          currentState = uinfo.getLockState();
-          if (reduceToExpand.containsKey(currentState)) {
-            expandedState = reduceToExpand.get(currentState);
-          } else {
-            expandedUsages++;
-            LockStatisticsStateBuilder builder = currentState.builder();
-            for (LockEffect effect : effects) {
-              effect.effect(builder);
-            }
-            expandedState = builder.build();
-            reduceToExpand.put(currentState, expandedState);
+        if (immutableEffects == null) {
+          //The list is a part of the cache keys
+          immutableEffects = ImmutableList.copyOf(effects);
+        }
+        PersistentSortedMap<UsageInfo, Boolean> result = getUsagesForId(id);
+        for (UsageInfo uinfo : otherStorage.keySet()) {
+          LockStatisticsState expandedState = expandCache.expand(immutableEffects, uinfo.getLockState());
+          UsageInfo expandedInfo = uinfo.expand(expandedState);
+          if (!result.containsKey(expandedInfo)) {
+            result = result.putAndCopy(expandedInfo, Boolean.TRUE);
           }
-          result.add(uinfo.expand(expandedState));
         }
-        addAll(id, result);
+        storage = storage.putAndCopy(id, result);
         effectTimer.stop();
       }
     }
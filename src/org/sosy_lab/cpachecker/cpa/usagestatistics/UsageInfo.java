@@ -103,7 +103,7 @@ public class UsageInfo implements Comparable<UsageInfo> {
 
   public UsagePoint getUsagePoint() {
     if (this.locks != null && (this.locks.getSize() > 0 || this.accessType == Access.READ)) {
-      return new UsagePoint(locks.getLockIdentifiers(), accessType);
+      return new UsagePoint(locks.getLockIdentifiers(), locks.getLockSet(), accessType);
     } else {
       return new UsagePoint(this);
     }
@@ -186,6 +186,11 @@ public class UsageInfo implements Comparable<UsageInfo> {
     return path;
   }
 
+  public void releasePath() {
+    //The path is already printed and is not needed anymore
+    path = null;
+  }
+
   @Override
   public int compareTo(UsageInfo pO) {
     int result;
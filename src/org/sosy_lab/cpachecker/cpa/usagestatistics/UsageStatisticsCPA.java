@@ -145,10 +145,16 @@ public class UsageStatisticsCPA extends AbstractSingleWrapperCPA implements Conf
 
   @Override
   public Precision getInitialPrecision(CFANode pNode, StateSpacePartition p) {
-    precision = new UsageStatisticsPrecision(this.getWrappedCpa().getInitialPrecision(pNode, p));
-    PresisionParser parser = new PresisionParser(outputFileName, cfa);
-    parser.parse(precision);
-    return precision;
+    Precision wrappedPrecision = this.getWrappedCpa().getInitialPrecision(pNode, p);
+    if (precision == null) {
+      precision = new UsageStatisticsPrecision(wrappedPrecision);
+      PresisionParser parser = new PresisionParser(outputFileName, cfa);
+      parser.parse(precision);
+      return precision;
+    } else {
+      //The file is parsed only once, all precisions share the same local statistics
+      return precision.clone(wrappedPrecision);
+    }
   }
 
   @Override
@@ -170,6 +176,10 @@ public class UsageStatisticsCPA extends AbstractSingleWrapperCPA implements Conf
     return logger;
   }
 
+  UsageContainer getContainer() {
+    return container;
+  }
+
   @Override
   public AbstractState getInitialState(CFANode pNode, StateSpacePartition pPartition) {
     return new UsageStatisticsState(getWrappedCpa().getInitialState(pNode, pPartition), container);
@@ -23,16 +23,21 @@
  */
 package org.sosy_lab.cpachecker.cpa.usagestatistics;
 
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.FileOption;
@@ -74,6 +79,8 @@ import org.sosy_lab.cpachecker.util.identifiers.LocalVariableIdentifier;
 import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
 import org.sosy_lab.cpachecker.util.identifiers.StructureFieldIdentifier;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
 @Options(prefix="cpa.usagestatistics")
@@ -101,6 +108,15 @@ public class UsageStatisticsCPAStatistics implements Statistics {
   @Option(description="print information about false unsafes")
   private boolean printFalseUnsafes = false;
 
+  @Option(description="print every true unsafe to a separate compressed file as soon as it is refined"
+      + " and release its paths, the main output then contains only other unsafes")
+  private boolean printTrueUnsafesImmediately = false;
+
+  @Option(name="trueUnsafesOutput", description="path to write true unsafes (gzip-compressed)"
+      + " if they are printed immediately")
+  @FileOption(FileOption.Type.OUTPUT_FILE)
+  private Path outputTrueUnsafes = Paths.get("unsafe_rawdata_true.gz");
+
   /* Previous container is used when internal time limit occurs
    * and we need to store statistics. In current one the information can be not
    * relevant (for example not all ARG was built).
@@ -129,6 +145,10 @@ public class UsageStatisticsCPAStatistics implements Statistics {
   private UnsafeDetector detector;
   private final LockStatisticsTransferRelation lockTransfer;
 
+  private Writer trueUnsafesWriter = null;
+  //True unsafes, which are already printed, their paths are released
+  private final Set<SingleIdentifier> printedUnsafes = new HashSet<>();
+
   public final Timer transferRelationTimer = new Timer();
   public final Timer printStatisticsTimer = new Timer();
 
@@ -284,39 +304,28 @@ public class UsageStatisticsCPAStatistics implements Statistics {
     if (uinfo.size() > maxNumberOfUsages) {
       maxNumberOfUsages = uinfo.size();
     }
-    if (writer != null) {
-      if (id instanceof StructureFieldIdentifier) {
-        writer.append("###\n");
-      } else if (id instanceof GlobalVariableIdentifier) {
-        writer.append("#\n");
-      } else if (id instanceof LocalVariableIdentifier) {
-        writer.append("##" + ((LocalVariableIdentifier)id).getFunction() + "\n");
-      } else {
-        logger.log(Level.WARNING, "What is it? " + id.toString());
-      }
-      writer.append(id.getDereference() + "\n");
-      writer.append(id.getType().toASTString(id.getName()) + "\n");
-    } else {
-      assert outputFileType == OutputFileType.MULTIPLE_FILES;
-      //Special format for Multi error traces in LDV
-      Path currentPath = Paths.get(outputSuffix + "ErrorPath." + createUniqueName(id) + ".txt");
-      writer = Files.openOutputFile(currentPath);
-    }
     if (isTrueUnsafe) {
-    	trueUnsafes++;
-      writer.append("Line 0:     N0 -{/*Is true unsafe:*/}-> N0" + "\n");
+      trueUnsafes++;
     }
-    writer.append("Line 0:     N0 -{/*Number of usage points:" + uinfo.getNumberOfTopUsagePoints() + "*/}-> N0" + "\n");
-    writer.append("Line 0:     N0 -{/*Number of usages      :" + uinfo.size() + "*/}-> N0" + "\n");
-    writer.append("Line 0:     N0 -{/*Two examples:*/}-> N0" + "\n");
     Pair<UsageInfo, UsageInfo> tmpPair = detector.getUnsafePair(uinfo);
-    createVisualization(id, tmpPair.getFirst(), writer);
-    createVisualization(id, tmpPair.getSecond(), writer);
     if (tmpPair.getFirst().failureFlag && tmpPair.getSecond().failureFlag) {
       totalFailureUnsafes++;
     } else if (tmpPair.getFirst().failureFlag || tmpPair.getSecond().failureFlag) {
       totalUnsafesWithFailureUsageInPair++;
     }
+    if (printedUnsafes.contains(id)) {
+      //It is already printed to the file with true unsafes
+      return;
+    }
+    if (writer != null) {
+      printIdentifier(id, writer);
+    } else {
+      assert outputFileType == OutputFileType.MULTIPLE_FILES;
+      //Special format for Multi error traces in LDV
+      Path currentPath = Paths.get(outputSuffix + "ErrorPath." + createUniqueName(id) + ".txt");
+      writer = Files.openOutputFile(currentPath);
+    }
+    createVisualization(id, uinfo, tmpPair, writer);
     if (pWriter == null) {
       writer.close();
     }
@@ -333,6 +342,66 @@ public class UsageStatisticsCPAStatistics implements Statistics {
     }*/
   }
 
+  private void printIdentifier(final SingleIdentifier id, final Writer writer) throws IOException {
+    if (id instanceof StructureFieldIdentifier) {
+      writer.append("###\n");
+    } else if (id instanceof GlobalVariableIdentifier) {
+      writer.append("#\n");
+    } else if (id instanceof LocalVariableIdentifier) {
+      writer.append("##" + ((LocalVariableIdentifier)id).getFunction() + "\n");
+    } else {
+      logger.log(Level.WARNING, "What is it? " + id.toString());
+    }
+    writer.append(id.getDereference() + "\n");
+    writer.append(id.getType().toASTString(id.getName()) + "\n");
+  }
+
+  private void createVisualization(final SingleIdentifier id, final AbstractUsagePointSet uinfo,
+      final Pair<UsageInfo, UsageInfo> pair, final Writer writer) throws IOException, CPATransferException, InterruptedException {
+    if (uinfo instanceof RefinedUsagePointSet) {
+      writer.append("Line 0:     N0 -{/*Is true unsafe:*/}-> N0" + "\n");
+    }
+    writer.append("Line 0:     N0 -{/*Number of usage points:" + uinfo.getNumberOfTopUsagePoints() + "*/}-> N0" + "\n");
+    writer.append("Line 0:     N0 -{/*Number of usages      :" + uinfo.size() + "*/}-> N0" + "\n");
+    writer.append("Line 0:     N0 -{/*Two examples:*/}-> N0" + "\n");
+    createVisualization(id, pair.getFirst(), writer);
+    createVisualization(id, pair.getSecond(), writer);
+  }
+
+  /**
+   * Prints the just refined true unsafe, if the option printTrueUnsafesImmediately is set.
+   * After that the paths of its usages are released, so they are not kept until the end of analysis.
+   */
+  public void printTrueUnsafeIfNecessary(final SingleIdentifier id, final UsageContainer pContainer) {
+    if (!printTrueUnsafesImmediately) {
+      return;
+    }
+    printStatisticsTimer.start();
+    try {
+      if (trueUnsafesWriter == null) {
+        Files.createParentDirs(outputTrueUnsafes);
+        //Synchronized flush allows to keep the printed unsafes, even if the analysis fails later
+        trueUnsafesWriter = new BufferedWriter(new OutputStreamWriter(
+            new GZIPOutputStream(outputTrueUnsafes.asByteSink().openStream(), true), StandardCharsets.UTF_8));
+      }
+      AbstractUsagePointSet uinfo = pContainer.getUsages(id);
+      assert uinfo instanceof RefinedUsagePointSet;
+      Pair<UsageInfo, UsageInfo> pair = pContainer.getUnsafeDetector().getUnsafePair(uinfo);
+      printIdentifier(id, trueUnsafesWriter);
+      createVisualization(id, uinfo, pair, trueUnsafesWriter);
+      trueUnsafesWriter.flush();
+      pair.getFirst().releasePath();
+      pair.getSecond().releasePath();
+      printedUnsafes.add(id);
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not write true unsafe to " + outputTrueUnsafes);
+    } catch (CPATransferException | InterruptedException e) {
+      logger.logUserException(Level.WARNING, e, "Could not print true unsafe " + id);
+    } finally {
+      printStatisticsTimer.stop();
+    }
+  }
+
   public void printUnsafeRawdata(final ReachedSet reached, boolean printOnlyTrueUnsafes) {
     try {
       printStatisticsTimer.start();
@@ -348,7 +417,9 @@ public class UsageStatisticsCPAStatistics implements Statistics {
         if (outputFileType == OutputFileType.SINGLE_FILE) {
           writer = Files.openOutputFile(outputStatFileName);
           logger.log(Level.FINE, "Print statistics about unsafe cases");
-          printCountStatistics(writer, container.getUnsafeIterator());
+          //The unsafes, which are already printed to the file with true unsafes, are not repeated here
+          printCountStatistics(writer, Iterators.filter(container.getUnsafeIterator(),
+              Predicates.not(Predicates.in(printedUnsafes))));
         }
         logger.log(Level.FINEST, "Processing unsafe identifiers");
         Iterator<SingleIdentifier> unsafeIterator = container.getUnsafeIterator();
@@ -372,6 +443,8 @@ public class UsageStatisticsCPAStatistics implements Statistics {
         logger.log(Level.SEVERE, "Printing statistics was interrupted");
         e.printStackTrace();
         return;
+      } finally {
+        closeWriters(writer);
       }
       if (printFalseUnsafes) {
         Set<SingleIdentifier> currentUnsafes = container.getAllUnsafes();
@@ -429,9 +502,28 @@ public class UsageStatisticsCPAStatistics implements Statistics {
     out.println("Number of miss joins:               " + TemporaryUsageStorage.missTimes);
     out.println("Number of expanding querries:       " + TemporaryUsageStorage.totalUsages);
     out.println("Number of executed querries:        " + TemporaryUsageStorage.expandedUsages);
+    out.println("Number of expand cache hits:        " + TemporaryUsageStorage.expandCacheHits);
 
   }
 
+  private void closeWriters(final Writer writer) {
+    try {
+      if (writer != null) {
+        writer.close();
+      }
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not write " + outputStatFileName);
+    }
+    if (trueUnsafesWriter != null) {
+      try {
+        trueUnsafesWriter.close();
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not write true unsafes to " + outputTrueUnsafes);
+      }
+      trueUnsafesWriter = null;
+    }
+  }
+
   private void printCountStatistics(final Writer writer, final Iterator<SingleIdentifier> idIterator) throws IOException {
     int global = 0, local = 0, fields = 0;
     int globalPointer = 0, localPointer = 0, fieldPointer = 0;
@@ -34,20 +34,27 @@ import org.sosy_lab.cpachecker.cpa.local.LocalState.DataType;
 import org.sosy_lab.cpachecker.util.identifiers.GeneralIdentifier;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
 
 
 public class UsageStatisticsPrecision implements WrapperPrecision {
+  /* The local statistics are parsed only once and then shared between all precisions,
+   * so they are compared by identity
+   */
   private HashMap<CFANode, Map<GeneralIdentifier, DataType>> localStatistics;
+  private int totalRecords;
   private final Precision wrappedPrecision;
 
   UsageStatisticsPrecision(Precision pWrappedPrecision) {
     localStatistics = new HashMap<>();
+    totalRecords = 0;
     wrappedPrecision = pWrappedPrecision;
   }
 
   public boolean add(CFANode node, Map<GeneralIdentifier, DataType> info) {
     if (!localStatistics.containsKey(node)) {
-      localStatistics.put(node, info);
+      localStatistics.put(node, ImmutableMap.copyOf(info));
+      totalRecords += info.size();
       return true;
     } else {
       //strange situation, we should know about it, because we consider, that nodes in file are unique
@@ -66,6 +73,7 @@ public class UsageStatisticsPrecision implements WrapperPrecision {
   public UsageStatisticsPrecision clone(Precision wrappedPrecision) {
     UsageStatisticsPrecision newPrecision = new UsageStatisticsPrecision(wrappedPrecision);
     newPrecision.localStatistics = this.localStatistics;
+    newPrecision.totalRecords = this.totalRecords;
     return newPrecision;
   }
 
@@ -73,7 +81,7 @@ public class UsageStatisticsPrecision implements WrapperPrecision {
   public int hashCode() {
     final int prime = 31;
     int result = 1;
-    result = prime * result + ((localStatistics == null) ? 0 : localStatistics.hashCode());
+    result = prime * result + System.identityHashCode(localStatistics);
     result = prime * result + ((wrappedPrecision == null) ? 0 : wrappedPrecision.hashCode());
     return result;
   }
@@ -90,11 +98,7 @@ public class UsageStatisticsPrecision implements WrapperPrecision {
       return false;
     }
     UsageStatisticsPrecision other = (UsageStatisticsPrecision) obj;
-    if (localStatistics == null) {
-      if (other.localStatistics != null) {
-        return false;
-      }
-    } else if (!localStatistics.equals(other.localStatistics)) {
+    if (localStatistics != other.localStatistics) {
       return false;
     }
     if (wrappedPrecision == null) {
@@ -120,11 +124,7 @@ public class UsageStatisticsPrecision implements WrapperPrecision {
   }
 
   public int getTotalRecords() {
-    int sum = 0;
-    for (CFANode node : localStatistics.keySet()) {
-      sum += localStatistics.get(node).size();
-    }
-    return sum;
+    return totalRecords;
   }
 
   @Override
@@ -145,13 +145,9 @@ public class UsageStatisticsPrecision implements WrapperPrecision {
     if (pReplaceType.apply(this)) {
       return pNewPrecision;
     } else if (pReplaceType.apply(wrappedPrecision)) {
-      UsageStatisticsPrecision result = new UsageStatisticsPrecision(pNewPrecision);
-      result.localStatistics = this.localStatistics;
-      return result;
+      return clone(pNewPrecision);
     } else if (wrappedPrecision instanceof WrapperPrecision) {
-      UsageStatisticsPrecision result = new UsageStatisticsPrecision(((WrapperPrecision) wrappedPrecision).replaceWrappedPrecision(pNewPrecision, pReplaceType));
-      result.localStatistics = this.localStatistics;
-      return result;
+      return clone(((WrapperPrecision) wrappedPrecision).replaceWrappedPrecision(pNewPrecision, pReplaceType));
 
     } else {
       return null;
@@ -27,6 +27,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.log.LogManager;
@@ -43,6 +45,7 @@ import org.sosy_lab.cpachecker.cpa.predicate.BAMPredicateRefiner;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicateAbstractionManager;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicatePrecision;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicateStaticRefiner;
+import org.sosy_lab.cpachecker.cpa.predicate.SeparateSolverInterpolation;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
 
@@ -53,8 +56,9 @@ public class UsageStatisticsPredicateRefiner extends BAMPredicateRefiner {
   private ARGReachedSet ARGReached;
 
   public UsageStatisticsPredicateRefiner(ConfigurableProgramAnalysis pCpa,
-      UsageStatisticsRefinementStrategy pStrategy, ReachedSet reached) throws InvalidConfigurationException {
-    super(pCpa, pStrategy);
+      UsageStatisticsRefinementStrategy pStrategy, ReachedSet reached,
+      @Nullable SeparateSolverInterpolation pInterpolation) throws InvalidConfigurationException {
+    super(pCpa, pStrategy, pInterpolation);
     strategy = pStrategy;
     if (reached != null) {
       ARGReached = new ARGReachedSet(reached);
@@ -62,6 +66,11 @@ public class UsageStatisticsPredicateRefiner extends BAMPredicateRefiner {
   }
 
   public static UsageStatisticsPredicateRefiner create(ConfigurableProgramAnalysis pCpa, ReachedSet reached) throws  InvalidConfigurationException {
+    return create(pCpa, reached, null);
+  }
+
+  public static UsageStatisticsPredicateRefiner create(ConfigurableProgramAnalysis pCpa, ReachedSet reached,
+      @Nullable SeparateSolverInterpolation pInterpolation) throws  InvalidConfigurationException {
     if (!(pCpa instanceof WrapperCPA)) {
       throw new InvalidConfigurationException(BAMPredicateRefiner.class.getSimpleName() + " could not find the PredicateCPA");
     }
@@ -81,7 +90,7 @@ public class UsageStatisticsPredicateRefiner extends BAMPredicateRefiner {
                                           predicateCpa.getPredicateManager(),
                                           predicateCpa.getStaticRefiner());
 
-    return new UsageStatisticsPredicateRefiner(pCpa, strategy, reached);
+    return new UsageStatisticsPredicateRefiner(pCpa, strategy, reached, pInterpolation);
   }
 
   public CounterexampleInfo performRefinement(ARGPath path) throws CPAException, InterruptedException {
@@ -39,7 +39,7 @@ import org.sosy_lab.cpachecker.cpa.usagestatistics.refinement.ConfigurableRefine
 import org.sosy_lab.cpachecker.cpa.usagestatistics.refinement.RefinementBlockFactory;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 
-public class UsageStatisticsRefiner extends BAMPredicateRefiner implements StatisticsProvider {
+public class UsageStatisticsRefiner extends BAMPredicateRefiner implements StatisticsProvider, AutoCloseable {
 
   private class Stats implements Statistics {
 
@@ -91,4 +91,10 @@ public class UsageStatisticsRefiner extends BAMPredicateRefiner implements Stati
     pStatsCollection.add(pStat);
   }
 
+  @Override
+  public void close() throws Exception {
+    if (startingBlock instanceof AutoCloseable) {
+      ((AutoCloseable) startingBlock).close();
+    }
+  }
 }
@@ -23,6 +23,9 @@
  */
 package org.sosy_lab.cpachecker.cpa.usagestatistics;
 
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -40,15 +43,15 @@ import org.sosy_lab.cpachecker.cpa.lockstatistics.effects.LockEffect;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicateAbstractState;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.UsageContainer;
 import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.CPAs;
 import org.sosy_lab.cpachecker.util.identifiers.AbstractIdentifier;
+import org.sosy_lab.cpachecker.util.globalinfo.GlobalInfo;
 import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
 
 /**
  * Represents one abstract state of the UsageStatistics CPA.
  */
 public class UsageStatisticsState extends AbstractSingleWrapperState implements Targetable {
-  /* Boilerplate code to avoid serializing this class */
-
   private static final long serialVersionUID = -898577877284268426L;
   private TemporaryUsageStorage recentUsages;
   private boolean isStorageCloned;
@@ -81,10 +84,11 @@ public class UsageStatisticsState extends AbstractSingleWrapperState implements
     *  if we have *b, map also contains **b, ***b and so on.
     *  So, if we get **b, having (*b, c), we give *c
     */
-    final AbstractIdentifier tmpId = id.clone();
+    if (variableBindingRelation.isEmpty()) {
+      return false;
+    }
     for (int d = id.getDereference(); d >= 0; d--) {
-      tmpId.setDereference(d);
-      if (variableBindingRelation.containsKey(tmpId)) {
+      if (variableBindingRelation.containsKey(id.withDereference(d))) {
         return true;
       }
     }
@@ -105,13 +109,12 @@ public class UsageStatisticsState extends AbstractSingleWrapperState implements
     /* Special get!
      * If we get **b, having (*b, c), we give *c
      */
-    AbstractIdentifier tmpId = id.clone();
     for (int d = id.getDereference(); d >= 0; d--) {
-      tmpId.setDereference(d);
-      if (variableBindingRelation.containsKey(tmpId)) {
-        tmpId = variableBindingRelation.get(tmpId).clone();
-        int currentD = tmpId.getDereference();
-        tmpId.setDereference(currentD + id.getDereference() - d);
+      AbstractIdentifier link = variableBindingRelation.get(id.withDereference(d));
+      if (link != null) {
+        //The result is a copy, as identifiers are mutable and the link is shared with the map
+        AbstractIdentifier tmpId = link.clone();
+        tmpId.setDereference(link.getDereference() + id.getDereference() - d);
         if (this.containsLinks(tmpId)) {
           tmpId = getLinks(tmpId);
         }
@@ -219,7 +222,7 @@ public class UsageStatisticsState extends AbstractSingleWrapperState implements
 
     tmpTimer1.stop();
     tmpTimer2.start();
-    result.functionContainer.join(functionContainer, difference);
+    result.functionContainer.join(functionContainer, difference, globalContainer.getExpandCache());
     tmpTimer2.stop();
     return result;
   }
@@ -240,7 +243,7 @@ public class UsageStatisticsState extends AbstractSingleWrapperState implements
       recentUsages.setKeyState(argState);
       List<LockEffect> emptyList = Collections.emptyList();
       tmpTimer3.start();
-      functionContainer.join(recentUsages, emptyList);
+      functionContainer.join(recentUsages, emptyList, globalContainer.getExpandCache());
       tmpTimer3.stop();
       recentUsages.clear();
     }
@@ -249,4 +252,27 @@ public class UsageStatisticsState extends AbstractSingleWrapperState implements
   public void updateContainerIfNecessary() {
     globalContainer.addNewUsagesIfNecessary(functionContainer);
   }
+
+  private Object writeReplace() throws ObjectStreamException {
+    //The usages refer to the ARG states of the current analysis, they can not be restored
+    if (!recentUsages.isEmpty() || !functionContainer.isEmpty() || !variableBindingRelation.isEmpty()) {
+      throw new NotSerializableException("UsageStatisticsState with usages or links");
+    }
+    //The global container belongs to the analysis, which reads the state
+    return new SerialProxy(getWrappedState());
+  }
+
+  private static class SerialProxy implements Serializable {
+    private static final long serialVersionUID = 5320911537842201934L;
+    private final AbstractState wrappedState;
+
+    public SerialProxy(AbstractState pWrappedState) {
+      wrappedState = pWrappedState;
+    }
+
+    private Object readResolve() {
+      UsageStatisticsCPA cpa = CPAs.retrieveCPA(GlobalInfo.getInstance().getCPA().get(), UsageStatisticsCPA.class);
+      return new UsageStatisticsState(wrappedState, cpa.getContainer());
+    }
+  }
 }
@@ -100,6 +100,7 @@ public class UsageStatisticsTransferRelation implements TransferRelation {
   private final CallstackTransferRelation callstackTransfer;
   //private final LockStatisticsTransferRelation lockstatTransfer = null;
   private final VariableSkipper varSkipper;
+  private final IdentifierShard shard;
 
   private Map<String, BinderFunctionInfo> binderFunctionInfo;
   private final LogManager logger;
@@ -123,6 +124,7 @@ public class UsageStatisticsTransferRelation implements TransferRelation {
     }
     handler = new ExpressionHandler();
     varSkipper = new VariableSkipper(config);
+    shard = new IdentifierShard(config);
   }
 
   @Override
@@ -491,6 +493,11 @@ public class UsageStatisticsTransferRelation implements TransferRelation {
       singleId = ((StructureIdentifier)singleId).toStructureFieldIdentifier();
     }
 
+    if (!shard.contains(singleId)) {
+      //The identifier is checked by other process
+      return;
+    }
+
     logger.log(Level.FINER, "Add id " + singleId + " to unsafe statistics");
     LockStatisticsState lockState = AbstractStates.extractStateByType(state, LockStatisticsState.class);
     logger.log(Level.FINEST, "Its locks are: " + lockState);
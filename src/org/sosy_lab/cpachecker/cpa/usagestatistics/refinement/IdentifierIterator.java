@@ -24,13 +24,26 @@
 package org.sosy_lab.cpachecker.cpa.usagestatistics.refinement;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.concurrency.Threads;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
@@ -47,10 +60,11 @@ import org.sosy_lab.cpachecker.cpa.bam.BAMTransferRelation;
 import org.sosy_lab.cpachecker.cpa.bam.MultipleARGSubtreeRemover;
 import org.sosy_lab.cpachecker.cpa.predicate.BAMPredicateCPA;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicatePrecision;
+import org.sosy_lab.cpachecker.cpa.predicate.SeparateSolverInterpolation;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsCPA;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsCPAStatistics;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsState;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.AbstractUsagePointSet;
-import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.RefinedUsagePointSet;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.UnrefinedUsagePointSet;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.UsageContainer;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
@@ -58,16 +72,22 @@ import org.sosy_lab.cpachecker.util.AbstractStates;
 import org.sosy_lab.cpachecker.util.CPAs;
 import org.sosy_lab.cpachecker.util.Precisions;
 import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 
 
 @Options(prefix="cpa.usagestatistics")
-public class IdentifierIterator extends WrappedConfigurableRefinementBlock<ReachedSet, SingleIdentifier> {
+public class IdentifierIterator extends WrappedConfigurableRefinementBlock<ReachedSet, SingleIdentifier>
+    implements AutoCloseable {
 
   private final ConfigurableProgramAnalysis cpa;
   private final LogManager logger;
+  private final UsageStatisticsCPAStatistics stats;
 
   @Option(name="precisionReset", description="The value of marked unsafes, after which the precision should be cleaned")
   private int precisionReset = Integer.MAX_VALUE;
@@ -78,8 +98,19 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
   @Option(name="totalARGCleaning", description="clean all ARG or try to reuse some parts of it (memory consuming)")
   private boolean totalARGCleaning = false;
 
+  @Option(name="preciseARGCleaning", description="with totalARGCleaning keep the cached blocks, "
+      + "which do not contain locations with changed predicates")
+  private boolean preciseARGCleaning = false;
+
   private final BAMTransferRelation transfer;
 
+  //Several chains refine different identifiers in parallel, the first one is the wrapped refiner
+  private final List<ConfigurableRefinementBlock<SingleIdentifier>> chains;
+  //The separate solvers are kept for the whole analysis and released by close()
+  private final List<SeparateSolverInterpolation> interpolations;
+  //Is held by a chain during its refinement, it is released only for interpolation
+  private final @Nullable ReentrantLock lock;
+
   //private Set<List<Integer>> refinedStates;
   //private final Set<Set<CFAEdge>> iCache;
   int i = 0;
@@ -88,13 +119,27 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
 
   private final Map<SingleIdentifier, PredicatePrecision> precisionMap = new HashMap<>();
 
+  //The predicates, with which the current analysis was started
+  private PredicatePrecision lastPredicates = PredicatePrecision.empty();
+
   public IdentifierIterator(ConfigurableRefinementBlock<SingleIdentifier> pWrapper, Configuration config,
       ConfigurableProgramAnalysis pCpa, BAMTransferRelation pTransfer) throws InvalidConfigurationException {
-    super(pWrapper);
+    this(Collections.singletonList(pWrapper), Collections.<SeparateSolverInterpolation>emptyList(), null,
+        config, pCpa, pTransfer);
+  }
+
+  IdentifierIterator(List<ConfigurableRefinementBlock<SingleIdentifier>> pChains,
+      List<SeparateSolverInterpolation> pInterpolations, @Nullable ReentrantLock pLock, Configuration config,
+      ConfigurableProgramAnalysis pCpa, BAMTransferRelation pTransfer) throws InvalidConfigurationException {
+    super(pChains.get(0));
+    chains = pChains;
+    interpolations = pInterpolations;
+    lock = pLock;
     config.inject(this);
     cpa = pCpa;
     UsageStatisticsCPA UScpa = CPAs.retrieveCPA(pCpa, UsageStatisticsCPA.class);
     logger = UScpa.getLogger();
+    stats = UScpa.getStats();
     Preconditions.checkArgument(refinablePathLimitation > 0,
         "The option refinablePathLimitation couldn't be " + refinablePathLimitation + ", why in this case you need refiner itself?");
     transfer = pTransfer;
@@ -115,14 +160,7 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
     int originUnsafeSize = container.getUnsafeSize();
     System.out.println("Time: " + MainCPAStatistics.programTime);
     System.out.println("Unsafes: " + originUnsafeSize);
-    Iterator<SingleIdentifier> iterator = container.getUnsafeIterator();
-    int trueU = 0;
-    while (iterator.hasNext()) {
-      if (container.getUsages(iterator.next()) instanceof RefinedUsagePointSet) {
-        trueU++;
-      }
-    }
-    System.out.println("True unsafes: " + trueU);
+    System.out.println("True unsafes: " + container.getTrueUnsafeSize());
     if (lastFalseUnsafeSize == -1) {
       lastFalseUnsafeSize = originUnsafeSize;
     }
@@ -133,38 +171,26 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
     sendUpdateSignal(UsagePairIterator.class, container);
     sendUpdateSignal(PointIterator.class, container);
 
-    iterator = container.getUnsafeIterator();
     boolean isPrecisionChanged = false;
-    while (iterator.hasNext()) {
-      SingleIdentifier currentId = iterator.next();
-
-      AbstractUsagePointSet pointSet = container.getUsages(currentId);
-      if (pointSet instanceof UnrefinedUsagePointSet) {
-        RefinementResult result = wrappedRefiner.performRefinement(currentId);
-        refinementFinish |= result.isFalse();
-
-        PredicatePrecision info = result.getPrecision();
+    if (lock == null) {
+      Iterator<SingleIdentifier> iterator = container.getUnsafeIterator();
+      while (iterator.hasNext()) {
+        SingleIdentifier currentId = iterator.next();
 
-        if (info != null && !info.getLocalPredicates().isEmpty()) {
-          PredicatePrecision updatedPrecision;
-          if (precisionMap.containsKey(currentId)) {
-            updatedPrecision = precisionMap.get(currentId).mergeWith(info);
-          } else {
-            updatedPrecision = info;
-          }
-          precisionMap.put(currentId, updatedPrecision);
-          isPrecisionChanged = true;
-        }
-
-        if (result.isTrue()) {
-          container.setAsRefined(currentId, result);
-        } else if (result.isFalse() && !isPrecisionChanged) {
-          //We do not add a precision, but consider the unsafe as false
-          //set it as false now, because it will occur again, as precision is not changed
-          //We can not look at precision size here - the result can be false due to heuristics
-          container.setAsFalseUnsafe(currentId);
+        AbstractUsagePointSet pointSet = container.getUsages(currentId);
+        if (pointSet instanceof UnrefinedUsagePointSet) {
+          RefinementResult result = wrappedRefiner.performRefinement(currentId);
+          refinementFinish |= result.isFalse();
+          isPrecisionChanged = handleResult(container, currentId, result, isPrecisionChanged);
         }
       }
+    } else {
+      //The results are handled in the order of the unsafe iterator, as in the sequential refinement
+      for (Map.Entry<SingleIdentifier, RefinementResult> entry : refineInParallel(container).entrySet()) {
+        RefinementResult result = entry.getValue();
+        refinementFinish |= result.isFalse();
+        isPrecisionChanged = handleResult(container, entry.getKey(), result, isPrecisionChanged);
+      }
     }
     int newTrueUnsafeSize = container.getTrueUnsafeSize();
     if (lastTrueUnsafes == -1) {
@@ -186,15 +212,8 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
     }
     if (refinementFinish) {
       bamcpa.clearAllCaches();
-      ARGState.clearIdGenerator();
       CFANode firstNode = AbstractStates.extractLocation(firstState);
       Precision precision = pReached.getPrecision(firstState);
-      if (totalARGCleaning) {
-        transfer.cleanCaches();
-      } else {
-        MultipleARGSubtreeRemover subtreesRemover = transfer.getMultipleARGSubtreeRemover();
-        subtreesRemover.cleanCaches();
-      }
       pReached.clear();
       PredicatePrecision predicates = Precisions.extractPrecisionByType(precision, PredicatePrecision.class);
       Set<SingleIdentifier> removedIds = new HashSet<>();
@@ -206,6 +225,24 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
         precisionMap.remove(id);
         removedIds.add(id);
       }
+      Set<CFANode> changedNodes = null;
+      if (totalARGCleaning && preciseARGCleaning) {
+        changedNodes = getChangedLocations(lastPredicates, predicates);
+      }
+      if (changedNodes != null) {
+        //The cached blocks are reused, so their states should keep the ids
+        transfer.cleanCaches(changedNodes);
+      } else if (totalARGCleaning) {
+        ARGState.clearIdGenerator();
+        transfer.cleanCaches();
+      } else {
+        ARGState.clearIdGenerator();
+        MultipleARGSubtreeRemover subtreesRemover = transfer.getMultipleARGSubtreeRemover();
+        subtreesRemover.cleanCaches();
+      }
+      //subtract() replaces the predicate maps, so the current ones are not modified later
+      lastPredicates = new PredicatePrecision(predicates.getLocationInstancePredicates(),
+          predicates.getLocalPredicates(), predicates.getFunctionPredicates(), predicates.getGlobalPredicates());
       sendUpdateSignal(PredicateRefinerAdapter.class, removedIds);
       pReached.add(cpa.getInitialState(firstNode, StateSpacePartition.getDefaultPartition()), precision);
       PredicatePrecision p = Precisions.extractPrecisionByType(pReached.getPrecision(pReached.getFirstState()),
@@ -222,10 +259,163 @@ public class IdentifierIterator extends WrappedConfigurableRefinementBlock<Reach
     }
   }
 
+  private boolean handleResult(UsageContainer container, SingleIdentifier id, RefinementResult result,
+      boolean isPrecisionChanged) {
+    isPrecisionChanged |= updatePrecision(id, result.getPrecision());
+
+    if (result.isTrue()) {
+      container.setAsRefined(id, result);
+      stats.printTrueUnsafeIfNecessary(id, container);
+    } else if (result.isFalse() && !isPrecisionChanged) {
+      //We do not add a precision, but consider the unsafe as false
+      //set it as false now, because it will occur again, as precision is not changed
+      //We can not look at precision size here - the result can be false due to heuristics
+      container.setAsFalseUnsafe(id);
+    }
+    return isPrecisionChanged;
+  }
+
+  /**
+   * Refines the unrefined identifiers with several chains.
+   * An identifier is always refined by the same chain, so the chain recognizes the repeated paths.
+   * Only the interpolation is really parallel, the other work of a chain is guarded by the lock.
+   * @return the results in the order of the unsafe iterator
+   */
+  private Map<SingleIdentifier, RefinementResult> refineInParallel(UsageContainer container)
+      throws CPAException, InterruptedException {
+    List<SingleIdentifier> unrefinedIds = new ArrayList<>();
+    List<List<SingleIdentifier>> partition = new ArrayList<>(chains.size());
+    for (int j = 0; j < chains.size(); j++) {
+      partition.add(new ArrayList<SingleIdentifier>());
+    }
+    Iterator<SingleIdentifier> iterator = container.getUnsafeIterator();
+    while (iterator.hasNext()) {
+      SingleIdentifier id = iterator.next();
+      if (container.getUsages(id) instanceof UnrefinedUsagePointSet) {
+        unrefinedIds.add(id);
+        partition.get((id.hashCode() & Integer.MAX_VALUE) % chains.size()).add(id);
+      }
+    }
+
+    // important to use daemon threads here, because a solver call may not react on interruption
+    ExecutorService executor = Executors.newFixedThreadPool(chains.size(),
+        Threads.threadFactoryBuilder().setDaemon(true).build());
+    List<Future<Map<SingleIdentifier, RefinementResult>>> futures = new ArrayList<>();
+    try {
+      for (int j = 0; j < chains.size(); j++) {
+        final ConfigurableRefinementBlock<SingleIdentifier> chain = chains.get(j);
+        final List<SingleIdentifier> ids = partition.get(j);
+        futures.add(executor.submit(new Callable<Map<SingleIdentifier, RefinementResult>>() {
+          @Override
+          public Map<SingleIdentifier, RefinementResult> call() throws CPAException, InterruptedException {
+            return refineIdentifiers(chain, ids);
+          }
+        }));
+      }
+
+      Map<SingleIdentifier, RefinementResult> results = new HashMap<>();
+      for (Future<Map<SingleIdentifier, RefinementResult>> future : futures) {
+        results.putAll(future.get());
+      }
+      Map<SingleIdentifier, RefinementResult> orderedResults = new LinkedHashMap<>();
+      for (SingleIdentifier id : unrefinedIds) {
+        orderedResults.put(id, results.get(id));
+      }
+      return orderedResults;
+
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      Throwables.propagateIfPossible(t, CPAException.class, InterruptedException.class);
+      throw new AssertionError("Unexpected checked exception", t);
+
+    } finally {
+      // if something failed, the other chains should not continue
+      executor.shutdownNow();
+    }
+  }
+
+  private Map<SingleIdentifier, RefinementResult> refineIdentifiers(ConfigurableRefinementBlock<SingleIdentifier> chain,
+      List<SingleIdentifier> ids) throws CPAException, InterruptedException {
+    Map<SingleIdentifier, RefinementResult> results = new HashMap<>();
+    lock.lockInterruptibly();
+    try {
+      for (SingleIdentifier id : ids) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        results.put(id, chain.performRefinement(id));
+      }
+    } finally {
+      lock.unlock();
+    }
+    return results;
+  }
+
+  /**
+   * Merges the new predicates for the identifier into the precision map.
+   * The unsafe iterator is sorted, so the order of merging is deterministic.
+   * @return true, if the precision is changed
+   */
+  private boolean updatePrecision(SingleIdentifier id, PredicatePrecision info) {
+    if (info == null || info.getLocalPredicates().isEmpty()) {
+      return false;
+    }
+    PredicatePrecision updatedPrecision;
+    if (precisionMap.containsKey(id)) {
+      updatedPrecision = precisionMap.get(id).mergeWith(info);
+    } else {
+      updatedPrecision = info;
+    }
+    precisionMap.put(id, updatedPrecision);
+    return true;
+  }
+
+  /**
+   * Finds the locations, at which the local predicates differ.
+   * @return the changed locations or null, if also non-local predicates are changed
+   */
+  private Set<CFANode> getChangedLocations(PredicatePrecision oldPredicates, PredicatePrecision newPredicates) {
+    if (!oldPredicates.getGlobalPredicates().equals(newPredicates.getGlobalPredicates())
+        || !oldPredicates.getFunctionPredicates().equals(newPredicates.getFunctionPredicates())
+        || !oldPredicates.getLocationInstancePredicates().equals(newPredicates.getLocationInstancePredicates())) {
+      return null;
+    }
+    SetMultimap<CFANode, AbstractionPredicate> oldLocal = oldPredicates.getLocalPredicates();
+    SetMultimap<CFANode, AbstractionPredicate> newLocal = newPredicates.getLocalPredicates();
+    Set<CFANode> changedNodes = new HashSet<>();
+    for (CFANode node : Sets.union(oldLocal.keySet(), newLocal.keySet())) {
+      if (!oldLocal.get(node).equals(newLocal.get(node))) {
+        changedNodes.add(node);
+      }
+    }
+    return changedNodes;
+  }
+
   @Override
-  public void printStatistics(PrintStream pOut) {
-    wrappedRefiner.printStatistics(pOut);
+  protected void sendUpdateSignal(Class<? extends RefinementInterface> dstClass, Object data) {
+    for (ConfigurableRefinementBlock<SingleIdentifier> chain : chains) {
+      chain.update(getClass(), dstClass, data);
+    }
+  }
 
+  @Override
+  protected void sendFinishSignal() throws CPAException, InterruptedException {
+    for (ConfigurableRefinementBlock<SingleIdentifier> chain : chains) {
+      chain.finish(getClass());
+    }
+  }
+
+  @Override
+  public void printStatistics(PrintStream pOut) {
+    for (ConfigurableRefinementBlock<SingleIdentifier> chain : chains) {
+      chain.printStatistics(pOut);
+    }
   }
 
+  @Override
+  public void close() {
+    for (SeparateSolverInterpolation interpolation : interpolations) {
+      interpolation.close();
+    }
+  }
 }
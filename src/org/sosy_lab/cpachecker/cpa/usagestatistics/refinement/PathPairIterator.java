@@ -38,6 +38,10 @@ import java.util.TreeMap;
 
 import javax.annotation.Nullable;
 
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
 import org.sosy_lab.cpachecker.cpa.arg.ARGPath;
@@ -55,9 +59,14 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 
+@Options(prefix="cpa.usagestatistics")
 public class PathPairIterator extends
     GenericIterator<Pair<UsageInfo, UsageInfo>, Pair<ExtendedARGPath, ExtendedARGPath>> {
 
+  @Option(name="skipRefinedPaths", description="do not refine a path, which contains all states "
+      + "with nontrivial interpolants of an already refuted path, compute the next one instead")
+  private boolean skipRefinedPaths = false;
+
   private final Set<List<Integer>> refinedStates = new HashSet<>();
   private final Map<ARGState, ARGState> subgraphStatesToReachedState;
   private final BAMTransferRelation transfer;
@@ -69,6 +78,7 @@ public class PathPairIterator extends
   private Timer additionTimer = new Timer();
   private int numberOfPathCalculated = 0;
   private int successfulAdditionChecks = 0;
+  private int numberOfSkippedPaths = 0;
   //private int numberOfrepeatedPaths = 0;
 
   private Map<AbstractState, Iterator<ARGState>> toCallerStatesIterator = new HashMap<>();
@@ -92,8 +102,10 @@ public class PathPairIterator extends
   private ExtendedARGPath firstPath = null;
 
   public PathPairIterator(ConfigurableRefinementBlock<Pair<ExtendedARGPath, ExtendedARGPath>> pWrapper
-      ,Map<ARGState, ARGState> pSubgraphStatesToReachedState, BAMTransferRelation bamTransfer) {
+      ,Map<ARGState, ARGState> pSubgraphStatesToReachedState, BAMTransferRelation bamTransfer,
+      Configuration pConfig) throws InvalidConfigurationException {
     super(pWrapper);
+    pConfig.inject(this);
     subgraphStatesToReachedState = pSubgraphStatesToReachedState;
     transfer = bamTransfer;
     fromReducedToExpand = transfer.getMapFromReducedToExpand();
@@ -199,6 +211,7 @@ public class PathPairIterator extends
     pOut.println("--Timer for addition checks:         " + additionTimer);
     pOut.println("Number of path calculated:           " + numberOfPathCalculated);
     pOut.println("Number of successful Addition Checks:" + successfulAdditionChecks);
+    pOut.println("Number of skipped paths:             " + numberOfSkippedPaths);
   }
 
   @Override
@@ -268,6 +281,16 @@ public class PathPairIterator extends
     } else {
       currentPath = computeNextPath(previousForkForUsage.get(info));
     }
+    while (skipRefinedPaths && currentPath != null) {
+      ARGState lastRefinedState = findLastRefinedState(currentPath);
+      if (lastRefinedState == null) {
+        break;
+      }
+      //The path is refuted by the same states, continue from the last one as after its refinement
+      numberOfSkippedPaths++;
+      previousForkForUsage.put(info, lastRefinedState);
+      currentPath = computeNextPath(lastRefinedState);
+    }
     computingPath.stop();
 
     if (currentPath == null) {
@@ -433,6 +456,25 @@ public class PathPairIterator extends
     }
   }
 
+  /**
+   * Looks for a sequence of refined states, which is completely contained in the path.
+   *
+   * @return the state of the path, which corresponds to the last state of the sequence,
+   *         or null, if the path contains no refined sequence
+   */
+  private ARGState findLastRefinedState(ARGPath path) {
+    List<ARGState> states = path.asStatesList();
+    List<Integer> stateNumbers = from(states).transform(GET_ORIGIN_STATE_NUMBERS).toList();
+    Set<Integer> containedNumbers = new HashSet<>(stateNumbers);
+    for (List<Integer> previousStates : refinedStates) {
+      if (!previousStates.isEmpty() && containedNumbers.containsAll(previousStates)) {
+        Integer lastNumber = previousStates.get(previousStates.size() - 1);
+        return states.get(stateNumbers.lastIndexOf(lastNumber));
+      }
+    }
+    return null;
+  }
+
   ARGPath computePath(BackwardARGState pLastElement) {
     assert (pLastElement != null && !pLastElement.isDestroyed());
       //we delete this state from other unsafe
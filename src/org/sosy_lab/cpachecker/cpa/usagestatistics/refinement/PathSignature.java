@@ -0,0 +1,156 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.usagestatistics.refinement;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
+
+/**
+ * The set of edges of a path, encoded as a bitset over dense edge ids.
+ * The ids are given by a {@link Factory}, so only signatures of the same factory may be compared.
+ * Equality of signatures ignores the order of edges, use {@link #inOrder()}, if the order matters.
+ */
+final class PathSignature {
+
+  private final long[] words;
+  private final int size;
+  private final long fingerprint;
+  private final Sequence sequence;
+
+  private PathSignature(long[] pWords, int[] pEdgeIds) {
+    words = pWords;
+    int cardinality = 0;
+    long hash = 1;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+      hash = 31 * hash + word;
+    }
+    size = cardinality;
+    fingerprint = mix(hash);
+    sequence = new Sequence(pEdgeIds);
+  }
+
+  private static long mix(long hash) {
+    //mix the bits, as the edge ids are dense and the words are similar
+    hash ^= (hash >>> 33);
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= (hash >>> 33);
+    return hash;
+  }
+
+  /**
+   * @return the edges of the path in their order, two paths are equal only if they pass the same edges
+   *         in the same order
+   */
+  Sequence inOrder() {
+    return sequence;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (fingerprint ^ (fingerprint >>> 32));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    PathSignature other = (PathSignature) obj;
+    return fingerprint == other.fingerprint && size == other.size && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public String toString() {
+    return "PathSignature of " + size + " edges";
+  }
+
+  /** The sequence of edge ids of a path */
+  static final class Sequence {
+    private final int[] edgeIds;
+    private final long fingerprint;
+
+    private Sequence(int[] pEdgeIds) {
+      edgeIds = pEdgeIds;
+      long hash = 1;
+      for (int id : edgeIds) {
+        hash = 31 * hash + id;
+      }
+      fingerprint = mix(hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Sequence other = (Sequence) obj;
+      //the fingerprint only speeds up the comparison, equal fingerprints are checked element-wise
+      return fingerprint == other.fingerprint && Arrays.equals(edgeIds, other.edgeIds);
+    }
+
+    @Override
+    public String toString() {
+      return "Sequence of " + edgeIds.length + " edges";
+    }
+  }
+
+  /** Interns the edges and creates the signatures of paths */
+  static class Factory {
+    private final Map<CFAEdge, Integer> edgeIds = new HashMap<>();
+
+    PathSignature create(List<CFAEdge> path) {
+      BitSet bits = new BitSet();
+      int[] sequence = new int[path.size()];
+      int i = 0;
+      for (CFAEdge edge : path) {
+        Integer id = edgeIds.get(edge);
+        if (id == null) {
+          id = edgeIds.size();
+          edgeIds.put(edge, id);
+        }
+        bits.set(id);
+        sequence[i++] = id;
+      }
+      //toLongArray() trims the trailing zero words, so equal sets have equal arrays
+      return new PathSignature(bits.toLongArray(), sequence);
+    }
+  }
+}
@@ -26,14 +26,14 @@ package org.sosy_lab.cpachecker.cpa.usagestatistics.refinement;
 import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.log.LogManager;
-import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
 import org.sosy_lab.cpachecker.core.CounterexampleInfo;
 import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
@@ -43,22 +43,23 @@ import org.sosy_lab.cpachecker.cpa.arg.ARGState;
 import org.sosy_lab.cpachecker.cpa.predicate.BAMPredicateCPA;
 import org.sosy_lab.cpachecker.cpa.predicate.BAMPredicateRefiner;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicatePrecision;
+import org.sosy_lab.cpachecker.cpa.predicate.SeparateSolverInterpolation;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsPredicateRefiner;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.util.Pair;
 import org.sosy_lab.cpachecker.util.Precisions;
 
-import com.google.common.collect.Sets;
-
 
 public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
   UsageStatisticsPredicateRefiner refiner;
   LogManager logger;
 
-  private final Map<Set<CFAEdge>, PredicatePrecision> falseCache = new HashMap<>();
-  private final Map<Set<CFAEdge>, PredicatePrecision> falseCacheForCurrentIteration = new HashMap<>();
+  //The false caches are keyed by the set of edges of a path, the true cache by the sequence of edges
+  private final PathSignature.Factory signatureFactory = new PathSignature.Factory();
+  private final Map<PathSignature, PredicatePrecision> falseCache = new HashMap<>();
+  private final Map<PathSignature, PredicatePrecision> falseCacheForCurrentIteration = new HashMap<>();
   //private final Multimap<SingleIdentifier, Set<CFAEdge>> idCached = LinkedHashMultimap.create();
-  private final Set<Set<CFAEdge>> trueCache = new HashSet<>();
+  private final Set<PathSignature.Sequence> trueCache = new HashSet<>();
 
   //Statistics
   private int solverFailures = 0;
@@ -66,7 +67,8 @@ public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
   private int numberOfrefinedPaths = 0;
 
   public PredicateRefinerAdapter(ConfigurableRefinementBlock<Pair<ExtendedARGPath, ExtendedARGPath>> wrapper,
-      ConfigurableProgramAnalysis pCpa, ReachedSet pReached) throws InvalidConfigurationException {
+      ConfigurableProgramAnalysis pCpa, ReachedSet pReached,
+      @Nullable SeparateSolverInterpolation pInterpolation) throws InvalidConfigurationException {
     super(wrapper);
 
     if (!(pCpa instanceof WrapperCPA)) {
@@ -80,19 +82,18 @@ public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
 
     logger = predicateCpa.getLogger();
 
-    refiner = UsageStatisticsPredicateRefiner.create(pCpa, pReached);
+    refiner = UsageStatisticsPredicateRefiner.create(pCpa, pReached, pInterpolation);
   }
 
   @Override
   public RefinementResult call(ExtendedARGPath pInput) throws CPAException, InterruptedException {
     RefinementResult result;
 
-    List<CFAEdge> currentPath = pInput.getInnerEdges();
-    if (trueCache.contains(currentPath)) {
+    PathSignature edgeSet = signatureFactory.create(pInput.getInnerEdges());
+    if (trueCache.contains(edgeSet.inOrder())) {
       //Somewhen we have already refined this path as true
       result = RefinementResult.createTrue();
     } else {
-      Set<CFAEdge> edgeSet = Sets.newHashSet(currentPath);
       if (falseCache.containsKey(edgeSet)) {
         PredicatePrecision previousPreds = falseCache.get(edgeSet);
         Precision currentPrecision = refiner.getCurrentPrecision();
@@ -106,7 +107,7 @@ public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
         } else {
           //rerefine it to obtain new states
           logger.log(Level.WARNING, "Path is repeated, but predicates are missed");
-          result = performPredicateRefinement(pInput);
+          result = performPredicateRefinement(pInput, edgeSet);
           //We expect the same result
           assert result.isFalse();
         }
@@ -124,22 +125,21 @@ public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
               subtreesRemover.addStateForRemoving(state);
             }
           }*/
-          result = performPredicateRefinement(pInput);
+          result = performPredicateRefinement(pInput, edgeSet);
         }
       }
     }
     return result;
   }
 
-  private RefinementResult performPredicateRefinement(ExtendedARGPath path) throws CPAException, InterruptedException {
+  private RefinementResult performPredicateRefinement(ExtendedARGPath path, PathSignature edgeSet) throws CPAException, InterruptedException {
     RefinementResult result;
     try {
       numberOfrefinedPaths++;
       CounterexampleInfo cex = refiner.performRefinement(path);
-      Set<CFAEdge> edgeSet = Sets.newHashSet(path.getInnerEdges());
 
       if (!cex.isSpurious()) {
-        trueCache.add(edgeSet);
+        trueCache.add(edgeSet.inOrder());
         result = RefinementResult.createTrue();
       } else {
         result = RefinementResult.createFalse();
@@ -172,7 +172,7 @@ public class PredicateRefinerAdapter extends GenericSinglePathRefiner {
   @Override
   protected Object handleFinishSignal(Class<? extends RefinementInterface> pCallerClass) {
     if (pCallerClass.equals(IdentifierIterator.class)) {
-      for (Set<CFAEdge> edges : falseCacheForCurrentIteration.keySet()) {
+      for (PathSignature edges : falseCacheForCurrentIteration.keySet()) {
         PredicatePrecision precision = falseCacheForCurrentIteration.get(edges);
         //false cache may contain other precision
         //It happens if we clean it for other Id and rerefine it now
@@ -23,9 +23,13 @@
  */
 package org.sosy_lab.cpachecker.cpa.usagestatistics.refinement;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
 
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
@@ -38,6 +42,8 @@ import org.sosy_lab.cpachecker.cpa.arg.ARGState;
 import org.sosy_lab.cpachecker.cpa.bam.BAMCPA;
 import org.sosy_lab.cpachecker.cpa.bam.BAMTransferRelation;
 import org.sosy_lab.cpachecker.cpa.local.LocalTransferRelation;
+import org.sosy_lab.cpachecker.cpa.predicate.BAMPredicateCPA;
+import org.sosy_lab.cpachecker.cpa.predicate.SeparateSolverInterpolation;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageStatisticsCPA;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.storage.UsageInfoSet;
@@ -74,13 +80,17 @@ public class RefinementBlockFactory {
   }
 
   private final static String CLASS_PREFIX = "org.sosy_lab.cpachecker.cpa.usagestatistics.refinement";
-  Map<ARGState, ARGState> subgraphStatesToReachedState = new HashMap<>();
   final ConfigurableProgramAnalysis cpa;
   Configuration config;
 
   @Option(name = "refinementChain", description = "The order of refinement blocks")
   List<RefinementBlockTypes> RefinementChain;
 
+  @Option(name = "refinementThreads", description = "The number of threads, which refine different identifiers. "
+      + "Every thread computes interpolants in its own solver, the other work is done sequentially. "
+      + "0 means the refinement in the main thread.")
+  int refinementThreads = 0;
+
   public RefinementBlockFactory(ConfigurableProgramAnalysis pCpa, Configuration pConfig) throws InvalidConfigurationException {
     cpa = pCpa;
     config = pConfig;
@@ -90,14 +100,51 @@ public class RefinementBlockFactory {
   public ConfigurableRefinementBlock<ReachedSet> create() throws InvalidConfigurationException {
     BAMCPA bam = CPAs.retrieveCPA(cpa, BAMCPA.class);
     BAMTransferRelation bamTransfer = bam.getTransferRelation();
+
+    if (refinementThreads <= 0) {
+      return (ConfigurableRefinementBlock<ReachedSet>) createChain(0, currentInnerBlockType.ReachedSet,
+          bamTransfer, null);
+    }
+
+    if (RefinementChain.isEmpty() || RefinementChain.get(0) != RefinementBlockTypes.IdentifierIterator) {
+      throw new InvalidConfigurationException("Parallel refinement needs "
+          + RefinementBlockTypes.IdentifierIterator + " as the first block");
+    }
+    BAMPredicateCPA predicateCpa = CPAs.retrieveCPA(cpa, BAMPredicateCPA.class);
+    if (predicateCpa == null) {
+      throw new InvalidConfigurationException("Parallel refinement needs a BAMPredicateCPA");
+    }
+    //Every thread gets its own chain, as the blocks keep the state of the current identifier
+    ReentrantLock lock = new ReentrantLock();
+    List<ConfigurableRefinementBlock<SingleIdentifier>> chains = new ArrayList<>(refinementThreads);
+    List<SeparateSolverInterpolation> interpolations = new ArrayList<>(refinementThreads);
+    for (int i = 0; i < refinementThreads; i++) {
+      SeparateSolverInterpolation interpolation = new SeparateSolverInterpolation(predicateCpa, lock);
+      chains.add((ConfigurableRefinementBlock<SingleIdentifier>) createChain(1, currentInnerBlockType.SingleIdentifier,
+          bamTransfer, interpolation));
+      interpolations.add(interpolation);
+    }
+    return new IdentifierIterator(chains, interpolations, lock, config, cpa, bamTransfer);
+  }
+
+  /**
+   * Creates the blocks of the chain beginning from the given index.
+   * @param firstIndex the index of the first created block in the chain
+   * @param expectedType the input type of the first created block
+   * @param interpolation the separate solver for interpolation of the predicate refiner or null
+   */
+  private RefinementInterface createChain(int firstIndex, currentInnerBlockType expectedType,
+      BAMTransferRelation bamTransfer, @Nullable SeparateSolverInterpolation interpolation)
+      throws InvalidConfigurationException {
     UsageStatisticsCPA usCPA = CPAs.retrieveCPA(cpa, UsageStatisticsCPA.class);
     LogManager logger = usCPA.getLogger();
+    Map<ARGState, ARGState> subgraphStatesToReachedState = new HashMap<>();
 
     //Tricky way to create the chain, but it is difficult to dynamically know the parameter types
     RefinementInterface currentBlock = new RefinementPairStub();
     currentInnerBlockType currentBlockType = currentInnerBlockType.ExtendedARGPath;
 
-    for (int i = RefinementChain.size() - 1; i >= 0; i--) {
+    for (int i = RefinementChain.size() - 1; i >= firstIndex; i--) {
 
       RefinementBlockTypes currentType = RefinementChain.get(i);
       if (currentBlockType == currentType.innerType) {
@@ -122,13 +169,13 @@ public class RefinementBlockFactory {
 
           case PathIterator:
             currentBlock = new PathPairIterator((ConfigurableRefinementBlock<Pair<ExtendedARGPath, ExtendedARGPath>>) currentBlock,
-                subgraphStatesToReachedState, bamTransfer);
+                subgraphStatesToReachedState, bamTransfer, config);
             currentBlockType = currentInnerBlockType.UsageInfo;
             break;
 
           case PredicateRefiner:
             currentBlock = new PredicateRefinerAdapter((ConfigurableRefinementBlock<Pair<ExtendedARGPath, ExtendedARGPath>>) currentBlock,
-                cpa, null);
+                cpa, null, interpolation);
             subgraphStatesToReachedState = ((PredicateRefinerAdapter)currentBlock).getInternalMapForStates();
             break;
 
@@ -158,10 +205,12 @@ public class RefinementBlockFactory {
         throw new InvalidConfigurationException(currentType + " can not precede the " + currentBlock.getClass().getSimpleName());
       }
     }
-    if (currentBlockType == currentInnerBlockType.ReachedSet) {
-      return (ConfigurableRefinementBlock<ReachedSet>) currentBlock;
-    } else {
+    if (currentBlockType == expectedType) {
+      return currentBlock;
+    } else if (expectedType == currentInnerBlockType.ReachedSet) {
       throw new InvalidConfigurationException("The first block is not take a reached set as parameter");
+    } else {
+      throw new InvalidConfigurationException("The second block is not take an identifier as parameter");
     }
   }
 }
@@ -23,9 +23,12 @@
  */
 package org.sosy_lab.cpachecker.cpa.usagestatistics.storage;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -34,13 +37,11 @@ import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
-import org.sosy_lab.cpachecker.cpa.lockstatistics.LockIdentifier;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockSet;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo.Access;
 import org.sosy_lab.cpachecker.util.Pair;
 
-import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Sets;
 
 @Options(prefix="cpa.usagestatistics.unsafedetector")
 public class UnsafeDetector {
@@ -99,17 +100,17 @@ public class UnsafeDetector {
       Iterator<UsagePoint> iterator = points.iterator();
       UsagePoint point = iterator.next();
 
-      if(ignoreEmptyLockset && point.locks.isEmpty()) {
+      if(ignoreEmptyLockset && point.lockSet.isEmpty()) {
         //special case when we ignore intersection of empty sets
         //at least one lockSet should be nonempty
 
         //we go with while locks is empty until first nonempty
         //search for non empty lockset
-        while(point.locks.isEmpty() && iterator.hasNext()) {
+        while(point.lockSet.isEmpty() && iterator.hasNext()) {
           //skip accesses without locks
           point = iterator.next();
         }
-        if(!point.locks.isEmpty()) {
+        if(!point.lockSet.isEmpty()) {
           //we already have an empty intersection
           //since we had an access without locks
           //and now have an access with some locks
@@ -120,15 +121,15 @@ public class UnsafeDetector {
         }
       }
       if (point.access == Access.WRITE) {
-        Set<LockIdentifier> lockSet = new HashSet<>(point.locks);
-        if (lockSet.isEmpty()) {
+        if (point.lockSet.isEmpty()) {
           return true;
         }
+        //The only allocation: the mask for intersection of all write locksets
+        long[] lockMask = point.lockSet.toMask();
         while (iterator.hasNext()) {
           point = iterator.next();
           if (point.access == Access.WRITE) {
-            lockSet.retainAll(point.locks);
-            if (lockSet.isEmpty()) {
+            if (!point.lockSet.retainIn(lockMask)) {
               return true;
             }
           } else {
@@ -136,7 +137,7 @@ public class UnsafeDetector {
              * (l1, l2, write), (l1, read), (l2, read)
              * Thus, we should process writes and reads differently
              */
-            if (Sets.intersection(lockSet, point.locks).isEmpty()) {
+            if (!point.lockSet.intersects(lockMask)) {
               return true;
             }
           }
@@ -146,28 +147,76 @@ public class UnsafeDetector {
     return false;
   }
 
+  /**
+   * The same as isUnsafe for the set {point1, point2}, but without creation of the set.
+   * The points should be ordered: point1 <= point2
+   */
+  private boolean isUnsafe(UsagePoint point1, UsagePoint point2) {
+    if (ignoreEmptyLockset && point1.lockSet.isEmpty()) {
+      //at least one lockSet should be nonempty
+      return !point2.lockSet.isEmpty();
+    }
+    if (point1.access == Access.WRITE) {
+      //Both for write and read second access
+      return point1.lockSet.isEmpty() || !point1.lockSet.intersects(point2.lockSet);
+    }
+    return false;
+  }
+
   private Pair<UsagePoint, UsagePoint> getUnsafePair(SortedSet<UsagePoint> set) {
+    /* Points are grouped by their locksets, usually there are only a few different ones.
+     * Thus, for every point we look only for the first suitable point in each group
+     * instead of checking all next points.
+     */
+    Map<LockSet, TreeSet<UsagePoint>> lockSetToPoints = new LinkedHashMap<>();
+    for (UsagePoint point : set) {
+      TreeSet<UsagePoint> group = lockSetToPoints.get(point.lockSet);
+      if (group == null) {
+        group = new TreeSet<>();
+        lockSetToPoints.put(point.lockSet, group);
+      }
+      group.add(point);
+    }
+    //lockset of the first point -> groups, which form unsafes with it
+    Map<LockSet, List<TreeSet<UsagePoint>>> suitableGroups = new HashMap<>();
 
     for (UsagePoint point1 : set) {
-      for (UsagePoint point2 : set.tailSet(point1)) {
-        if (point1.equals(point2)) {
-          /* There can be an unsafe even with only one usage,
-           * but at first we find two different usages
-           */
-          continue;
+      if (point1.access == Access.READ && !(ignoreEmptyLockset && point1.lockSet.isEmpty())) {
+        //All next points are reads with nonempty locksets, they can not be the first ones in unsafe pair
+        break;
+      }
+      /* The result of isUnsafe depends only on locksets here:
+       * the first point is either a write, or a read with empty lockset (ignoreEmptyLockset),
+       * for which the access is not important
+       */
+      List<TreeSet<UsagePoint>> groups = suitableGroups.get(point1.lockSet);
+      if (groups == null) {
+        groups = new ArrayList<>();
+        for (TreeSet<UsagePoint> group : lockSetToPoints.values()) {
+          if (isUnsafe(point1, group.first())) {
+            groups.add(group);
+          }
         }
-        UsagePoint[] pair = {point1, point2};
-        ImmutableSortedSet<UsagePoint> unsafePair = ImmutableSortedSet.copyOf(pair);
-        if (isUnsafe(unsafePair)) {
-          return Pair.of(point1, point2);
+        suitableGroups.put(point1.lockSet, groups);
+      }
+      /* There can be an unsafe even with only one usage,
+       * but at first we find two different usages
+       */
+      UsagePoint point2 = null;
+      for (TreeSet<UsagePoint> group : groups) {
+        UsagePoint candidate = group.higher(point1);
+        if (candidate != null && (point2 == null || candidate.compareTo(point2) < 0)) {
+          point2 = candidate;
         }
       }
+      if (point2 != null) {
+        return Pair.of(point1, point2);
+      }
     }
     //Now we find an unsafe only from one usage
     if (!ignoreEmptyLockset) {
       for (UsagePoint point1 : set) {
-        ImmutableSortedSet<UsagePoint> unsafePair = ImmutableSortedSet.copyOf(Collections.singleton(point1));
-        if (isUnsafe(unsafePair)) {
+        if (isUnsafe(point1, point1)) {
           return Pair.of(point1, point1);
         }
       }
@@ -177,9 +226,10 @@ public class UnsafeDetector {
   }
 
   public boolean isUnsafePair(UsagePoint pPoint1, UsagePoint pPoint2) {
-    SortedSet<UsagePoint> points = new TreeSet<>();
-    points.add(pPoint1);
-    points.add(pPoint2);
-    return isUnsafe(points);
+    if (pPoint1.compareTo(pPoint2) <= 0) {
+      return isUnsafe(pPoint1, pPoint2);
+    } else {
+      return isUnsafe(pPoint2, pPoint1);
+    }
   }
  }
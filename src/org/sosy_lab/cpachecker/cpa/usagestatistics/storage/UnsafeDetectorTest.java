@@ -0,0 +1,147 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.usagestatistics.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockIdentifier;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsState;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsState.LockStatisticsStateBuilder;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.LineInfo;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo.Access;
+import org.sosy_lab.cpachecker.util.Pair;
+
+import com.google.common.collect.ImmutableList;
+
+public class UnsafeDetectorTest {
+
+  private final CFANode node = new CFANode("main");
+  private final List<LockIdentifier> locks = ImmutableList.of(
+      LockIdentifier.of("l1"), LockIdentifier.of("l2"), LockIdentifier.of("l3"));
+
+  /**
+   * @param lockMask the bits of the mask correspond to the acquired locks
+   */
+  private UsageInfo usage(Access access, int line, int lockMask) {
+    LockStatisticsStateBuilder builder = new LockStatisticsState().builder();
+    for (int i = 0; i < locks.size(); i++) {
+      if ((lockMask & (1 << i)) != 0) {
+        builder.add(locks.get(i));
+      }
+    }
+    return new UsageInfo(access, new LineInfo(line, node), builder.build(), null);
+  }
+
+  private UnsafeDetector createDetector(boolean ignoreEmptyLockset) throws InvalidConfigurationException {
+    return new UnsafeDetector(Configuration.builder()
+        .setOption("cpa.usagestatistics.unsafedetector.ignoreEmptyLockset", Boolean.toString(ignoreEmptyLockset))
+        .build());
+  }
+
+  /**
+   * The search of the unsafe pair, which checks all pairs of points.
+   */
+  private static Pair<UsagePoint, UsagePoint> getPairByQuadraticScan(UnsafeDetector detector,
+      SortedSet<UsagePoint> set, boolean ignoreEmptyLockset) {
+    for (UsagePoint point1 : set) {
+      for (UsagePoint point2 : set.tailSet(point1)) {
+        if (!point1.equals(point2) && detector.isUnsafePair(point1, point2)) {
+          return Pair.of(point1, point2);
+        }
+      }
+    }
+    if (!ignoreEmptyLockset) {
+      for (UsagePoint point1 : set) {
+        if (detector.isUnsafePair(point1, point1)) {
+          return Pair.of(point1, point1);
+        }
+      }
+    }
+    return null;
+  }
+
+  private void checkRandomSets(boolean ignoreEmptyLockset) throws InvalidConfigurationException {
+    UnsafeDetector detector = createDetector(ignoreEmptyLockset);
+    Random random = new Random(0);
+    for (int i = 0; i < 2000; i++) {
+      UnrefinedUsagePointSet set = new UnrefinedUsagePointSet();
+      int size = 1 + random.nextInt(8);
+      for (int j = 0; j < size; j++) {
+        Access access = random.nextBoolean() ? Access.WRITE : Access.READ;
+        //Every fourth usage has an empty lockset
+        int lockMask = random.nextInt(4) == 0 ? 0 : random.nextInt(1 << locks.size());
+        set.add(usage(access, j, lockMask));
+      }
+      Pair<UsagePoint, UsagePoint> expected = getPairByQuadraticScan(detector, set.getTopUsages(), ignoreEmptyLockset);
+
+      assertThat(detector.getUnsafePointPair(set)).isEqualTo(expected);
+      assertThat(detector.isUnsafe(set)).isEqualTo(expected != null);
+    }
+  }
+
+  @Test
+  public void testPairIsTheSameAsByQuadraticScan() throws InvalidConfigurationException {
+    checkRandomSets(false);
+  }
+
+  @Test
+  public void testPairIsTheSameAsByQuadraticScanIgnoringEmptyLocksets() throws InvalidConfigurationException {
+    checkRandomSets(true);
+  }
+
+  @Test
+  public void testWriteWithoutLocksAndLockedRead() throws InvalidConfigurationException {
+    UnsafeDetector detector = createDetector(false);
+    UnrefinedUsagePointSet set = new UnrefinedUsagePointSet();
+    set.add(usage(Access.READ, 1, 1));
+    set.add(usage(Access.READ, 2, 2));
+    set.add(usage(Access.WRITE, 3, 0));
+
+    Pair<UsagePoint, UsagePoint> pair = detector.getUnsafePointPair(set);
+    assertThat(pair.getFirst().access).isEqualTo(Access.WRITE);
+    assertThat(pair.getFirst().lockSet.isEmpty()).isTrue();
+    assertThat(pair).isEqualTo(getPairByQuadraticScan(detector, set.getTopUsages(), false));
+  }
+
+  @Test
+  public void testProtectedByCommonLock() throws InvalidConfigurationException {
+    UnsafeDetector detector = createDetector(false);
+    UnrefinedUsagePointSet set = new UnrefinedUsagePointSet();
+    set.add(usage(Access.WRITE, 1, 3));
+    set.add(usage(Access.READ, 2, 1));
+    set.add(usage(Access.READ, 3, 2));
+
+    assertThat(detector.isUnsafe(set)).isFalse();
+    assertThat(detector.getUnsafePointPair(set)).isNull();
+  }
+}
@@ -24,11 +24,11 @@
 package org.sosy_lab.cpachecker.cpa.usagestatistics.storage;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -56,21 +56,31 @@ public class UsageContainer {
   private final Set<SingleIdentifier> falseUnsafes;
 
   private final Set<SingleIdentifier> processedUnsafes = new HashSet<>();
+  //Identifiers, which got new usages since the last check, only they are checked again
+  private final Set<SingleIdentifier> dirtyIds = new HashSet<>();
+  //Identifiers, which usages were reset and not collected again since the reset
+  private final Set<SingleIdentifier> resetIds = new HashSet<>();
+  private int skippedChecks = 0;
   //Only for statistics
   private Set<SingleIdentifier> initialSet = null;
   private int initialUsages;
 
   private final LogManager logger;
 
+  private final TemporaryUsageStorage.ExpandCache expandCache = new TemporaryUsageStorage.ExpandCache();
+
   public Timer resetTimer = new Timer();
 
-  int unsafeUsages = -1;
-  int totalIds = 0;
+  private boolean unsafesAreComputed = false;
 
   public UsageContainer(Configuration config, LogManager l) throws InvalidConfigurationException {
+    this(new UnsafeDetector(config), l);
+  }
+
+  UsageContainer(UnsafeDetector pDetector, LogManager l) {
     this(new TreeMap<SingleIdentifier, UnrefinedUsagePointSet>(),
         new TreeMap<SingleIdentifier, RefinedUsagePointSet>(),
-        new TreeSet<SingleIdentifier>(), l, new UnsafeDetector(config));
+        new TreeSet<SingleIdentifier>(), l, pDetector);
   }
 
   private UsageContainer(SortedMap<SingleIdentifier, UnrefinedUsagePointSet> pUnrefinedStat,
@@ -84,8 +94,12 @@ public class UsageContainer {
     detector = pDetector;
   }
 
+  public TemporaryUsageStorage.ExpandCache getExpandCache() {
+    return expandCache;
+  }
+
   public void addNewUsagesIfNecessary(TemporaryUsageStorage storage) {
-    if (unsafeUsages == -1) {
+    if (!unsafesAreComputed) {
       copyUsages(storage);
       getUnsafesIfNecessary();
     }
@@ -93,13 +107,13 @@ public class UsageContainer {
 
   public void forceAddNewUsages(TemporaryUsageStorage storage) {
     //This is a case of 'abort'-functions
-    assert (unsafeUsages == -1);
+    assert (!unsafesAreComputed);
     copyUsages(storage);
   }
 
   private void copyUsages(TemporaryUsageStorage storage) {
     for (SingleIdentifier id : storage.keySet()) {
-      SortedSet<UsageInfo> list = storage.get(id);
+      Set<UsageInfo> list = storage.get(id);
       for (UsageInfo info : list) {
         if (info.getKeyState() == null) {
           //Means that it is stored near the abort function
@@ -127,40 +141,43 @@ public class UsageContainer {
     }
     usage.setId(id);
     uset.add(usage);
+    resetIds.remove(id);
+    dirtyIds.add(id);
   }
 
   private void getUnsafesIfNecessary() {
-    if (unsafeUsages == -1) {
+    if (!unsafesAreComputed) {
       processedUnsafes.clear();
-      unsafeUsages = 0;
-      Set<SingleIdentifier> toDelete = new HashSet<>();
-      for (SingleIdentifier id : unrefinedIds.keySet()) {
-
-        UnrefinedUsagePointSet tmpList = unrefinedIds.get(id);
-        if (detector.isUnsafe(tmpList)) {
-          unsafeUsages += tmpList.size();
-        } else {
-          toDelete.add(id);
-          falseUnsafes.add(id);
-        }
-      }
-      for (SingleIdentifier id : toDelete) {
+      //The usages of these identifiers were not found after the reset, so there is nothing to check
+      for (SingleIdentifier id : new ArrayList<>(resetIds)) {
+        falseUnsafes.add(id);
         removeIdFromCaches(id);
       }
-      for (SingleIdentifier id : refinedIds.keySet()) {
-        RefinedUsagePointSet tmpList = refinedIds.get(id);
-        unsafeUsages += tmpList.size();
+      //The result of the previous check is still actual for other identifiers
+      skippedChecks += unrefinedIds.size() - dirtyIds.size();
+      for (SingleIdentifier id : new ArrayList<>(dirtyIds)) {
+        if (!detector.isUnsafe(unrefinedIds.get(id))) {
+          falseUnsafes.add(id);
+          removeIdFromCaches(id);
+        }
       }
+      dirtyIds.clear();
       if (initialSet == null) {
         assert refinedIds.isEmpty();
         initialSet = Sets.newHashSet(unrefinedIds.keySet());
-        initialUsages = unsafeUsages;
+        initialUsages = 0;
+        for (UnrefinedUsagePointSet uset : unrefinedIds.values()) {
+          initialUsages += uset.size();
+        }
       }
+      unsafesAreComputed = true;
     }
   }
 
   private void removeIdFromCaches(SingleIdentifier id) {
     unrefinedIds.remove(id);
+    dirtyIds.remove(id);
+    resetIds.remove(id);
     processedUnsafes.add(id);
   }
 
@@ -194,10 +211,11 @@ public class UsageContainer {
 
   public void resetUnrefinedUnsafes() {
     resetTimer.start();
-    unsafeUsages = -1;
+    unsafesAreComputed = false;
     for (UnrefinedUsagePointSet uset : unrefinedIds.values()) {
       uset.reset();
     }
+    resetIds.addAll(unrefinedIds.keySet());
     logger.log(Level.FINE, "Unsafes are reseted");
     resetTimer.stop();
   }
@@ -256,12 +274,15 @@ public class UsageContainer {
     out.println("Initial amount of unsafes (before refinement):    " + initialSet.size());
     out.println("Initial amount of usages (before refinement):     " + initialUsages);
     out.println("Initial amount of refined false unsafes:          " + falseUnsafes.size());
+    out.println("Number of unchanged unsafes, which were not checked: " + skippedChecks);
   }
 
   @Override
   public UsageContainer clone() {
     UsageContainer result = new UsageContainer(Maps.newTreeMap(unrefinedIds),
         Maps.newTreeMap(refinedIds), Sets.newHashSet(falseUnsafes), logger, detector);
+    //The copy checks all its unrefined identifiers
+    result.dirtyIds.addAll(unrefinedIds.keySet());
     return result;
   }
 
@@ -0,0 +1,114 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2015  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.usagestatistics.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.cfa.types.c.CNumericTypes;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockStatisticsState;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.LineInfo;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo;
+import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo.Access;
+import org.sosy_lab.cpachecker.util.identifiers.GlobalVariableIdentifier;
+import org.sosy_lab.cpachecker.util.identifiers.SingleIdentifier;
+
+public class UsageContainerTest {
+
+  private static class CountingDetector extends UnsafeDetector {
+    private int checks = 0;
+
+    private CountingDetector() throws InvalidConfigurationException {
+      super(Configuration.defaultConfiguration());
+    }
+
+    @Override
+    public boolean isUnsafe(AbstractUsagePointSet pSet) {
+      checks++;
+      return super.isUnsafe(pSet);
+    }
+  }
+
+  private final CFANode node = new CFANode("main");
+  private final SingleIdentifier a = new GlobalVariableIdentifier("a", CNumericTypes.INT, 0);
+  private final SingleIdentifier b = new GlobalVariableIdentifier("b", CNumericTypes.INT, 0);
+
+  private CountingDetector detector;
+  private UsageContainer container;
+
+  @Before
+  public void setUp() throws InvalidConfigurationException {
+    detector = new CountingDetector();
+    container = new UsageContainer(detector, TestLogManager.getInstance());
+  }
+
+  private UsageInfo write(int line) {
+    //A write without locks is an unsafe itself
+    return new UsageInfo(Access.WRITE, new LineInfo(line, node), new LockStatisticsState(), null);
+  }
+
+  @Test
+  public void testOnlyChangedIdsAreChecked() {
+    container.add(a, write(1));
+    container.add(b, write(2));
+    assertThat(container.getUnsafeSize()).isEqualTo(2);
+    assertThat(detector.checks).isEqualTo(2);
+
+    //The result is computed, so the next request does not check anything
+    assertThat(container.getAllUnsafes()).containsExactly(a, b);
+    assertThat(detector.checks).isEqualTo(2);
+
+    //'b' is not met after the reset, so it is removed without a check
+    container.resetUnrefinedUnsafes();
+    container.add(a, write(1));
+    assertThat(container.getAllUnsafes()).containsExactly(a);
+    assertThat(detector.checks).isEqualTo(3);
+  }
+
+  @Test
+  public void testFalseUnsafesAreNotChecked() {
+    container.add(a, write(1));
+    assertThat(container.getUnsafeSize()).isEqualTo(1);
+    container.setAsFalseUnsafe(a);
+
+    container.resetUnrefinedUnsafes();
+    container.add(a, write(1));
+    assertThat(container.getUnsafeSize()).isEqualTo(0);
+    assertThat(detector.checks).isEqualTo(1);
+  }
+
+  @Test
+  public void testResetRemovesOldUsages() {
+    container.add(a, write(1));
+    assertThat(container.getUnsafeSize()).isEqualTo(1);
+
+    container.resetUnrefinedUnsafes();
+    assertThat(container.getUsages(a).size()).isEqualTo(0);
+  }
+}
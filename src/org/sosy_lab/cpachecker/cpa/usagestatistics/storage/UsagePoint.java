@@ -7,6 +7,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.sosy_lab.cpachecker.cpa.lockstatistics.LockIdentifier;
+import org.sosy_lab.cpachecker.cpa.lockstatistics.LockSet;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo;
 import org.sosy_lab.cpachecker.cpa.usagestatistics.UsageInfo.Access;
 
@@ -14,24 +15,31 @@ import com.google.common.collect.ImmutableSortedSet;
 
 public class UsagePoint implements Comparable<UsagePoint> {
   public final ImmutableSortedSet<LockIdentifier> locks;
+  //The same locks as a bitset, it is used for fast intersection checks
+  public final LockSet lockSet;
   public final Access access;
   //This usage is used to distinct usage points with empty lock sets with write access from each other
   public final UsageInfo keyUsage;
   private final Set<UsagePoint> coveredUsages;
 
-  private UsagePoint(SortedSet<LockIdentifier> pLocks, Access pAccess, UsageInfo pInfo) {
+  private UsagePoint(SortedSet<LockIdentifier> pLocks, LockSet pLockSet, Access pAccess, UsageInfo pInfo) {
     locks = ImmutableSortedSet.copyOf(pLocks);
+    lockSet = pLockSet;
     access = pAccess;
     coveredUsages = new HashSet<>();
     keyUsage = pInfo;
   }
 
+  public UsagePoint(SortedSet<LockIdentifier> pLocks, LockSet pLockSet, Access pAccess) {
+    this(pLocks, pLockSet, pAccess, null);
+  }
+
   public UsagePoint(SortedSet<LockIdentifier> pLocks, Access pAccess) {
-    this(pLocks, pAccess, null);
+    this(pLocks, LockSet.copyOf(pLocks), pAccess, null);
   }
 
   public UsagePoint(UsageInfo pInfo) {
-    this(new TreeSet<LockIdentifier>(), Access.WRITE, pInfo);
+    this(new TreeSet<LockIdentifier>(), LockSet.empty(), Access.WRITE, pInfo);
   }
 
   public boolean addCoveredUsage(UsagePoint newChild) {
@@ -56,7 +64,7 @@ public class UsagePoint implements Comparable<UsagePoint> {
     final int prime = 31;
     int result = 1;
     result = prime * result + ((access == null) ? 0 : access.hashCode());
-    result = prime * result + ((locks == null) ? 0 : locks.hashCode());
+    result = prime * result + lockSet.hashCode();
     //This is for distinction usages with empty sets of locks
     result = prime * result + ((keyUsage == null) ? 0 : keyUsage.hashCode());
     return result;
@@ -77,11 +85,7 @@ public class UsagePoint implements Comparable<UsagePoint> {
     if (access != other.access) {
       return false;
     }
-    if (locks == null) {
-      if (other.locks != null) {
-        return false;
-      }
-    } else if (!locks.equals(other.locks)) {
+    if (!lockSet.equals(other.lockSet)) {
       return false;
     }
     //This is for distinction usages with empty sets of locks
@@ -102,7 +106,7 @@ public class UsagePoint implements Comparable<UsagePoint> {
     if (result != 0) {
       return result;
     }
-    result = locks.size() - o.locks.size();
+    result = lockSet.size() - o.lockSet.size();
     if (result != 0) {
       return result;
     }
@@ -124,7 +128,7 @@ public class UsagePoint implements Comparable<UsagePoint> {
   //TODO CompareTo? with enums
   public boolean isHigher(UsagePoint o) {
     // access 'write' is higher than 'read', but only for nonempty locksets
-    if (o.locks.containsAll(locks) && access.compareTo(o.access) <= 0 && keyUsage == null) {
+    if (o.lockSet.containsAll(lockSet) && access.compareTo(o.access) <= 0 && keyUsage == null) {
       /* Key usage is important, if it is present, it is write access without locks,
        * and we should handle all of them without inserting into covered elements of the tree structure
        */
@@ -47,6 +47,15 @@ public interface AbstractIdentifier extends Comparable<AbstractIdentifier> {
 
   public void setDereference(int d);
 
+  /**
+   * Returns an identifier, which differs from this one only in the dereference.
+   * The identifier itself is returned, if the dereference is the same,
+   * so it is cheaper than clone() and setDereference().
+   * The result may share its parts with this identifier, so it is intended only for lookups:
+   * it must not be modified and must not be returned to the callers, use clone() for them.
+   */
+  public AbstractIdentifier withDereference(int d);
+
   public boolean isPointer();
 
   /**
@@ -145,23 +145,29 @@ public class BinaryIdentifier implements AbstractIdentifier {
     dereference = pD;
   }
 
+  @Override
+  public BinaryIdentifier withDereference(int pD) {
+    if (pD == dereference) {
+      return this;
+    }
+    //Inner identifiers are not changed, so they may be shared
+    return new BinaryIdentifier(id1, id2, pD);
+  }
+
   @Override
   public AbstractIdentifier containsIn(Collection<? extends AbstractIdentifier> pSet) {
     if (pSet.contains(this)) {
       return this;
     } else {
-      int deref = id1.getDereference();
-      AbstractIdentifier tmp1 = id1.clone();
-      AbstractIdentifier tmp2 = id2.clone();
-      tmp1.setDereference(dereference + deref);
-      deref = id2.getDereference();
-      tmp2.setDereference(dereference + deref);
+      AbstractIdentifier tmp1 = id1.withDereference(dereference + id1.getDereference());
+      AbstractIdentifier tmp2 = id2.withDereference(dereference + id2.getDereference());
       AbstractIdentifier id1Container = tmp1.containsIn(pSet);
       AbstractIdentifier id2Container = tmp2.containsIn(pSet);
+      //The containers may be parts of this identifier, so they are copied
       if (id1Container != null) {
-        return id1Container;
+        return id1Container.clone();
       } else if (id2Container != null) {
-        return id2Container;
+        return id2Container.clone();
       } else {
         return null;
       }
@@ -184,10 +190,8 @@ public class BinaryIdentifier implements AbstractIdentifier {
   public DataType getType(Map<? extends AbstractIdentifier, DataType> pLocalInfo) {
     /*AbstractIdentifier tmp = name.containsIn(localInfo.keySet());
     DataType result1 = (tmp == null ? null : localInfo.get(tmp));*/
-    int deref = id1.getDereference();
-    AbstractIdentifier tmp1 = id1.clone();
+    AbstractIdentifier tmp1 = id1.withDereference(dereference + id1.getDereference());
     //AbstractIdentifier tmp2 = ((BinaryIdentifier) name).getIdentifier2().clone();
-    tmp1.setDereference(dereference + deref);
     /*deref = ((BinaryIdentifier) name).getIdentifier2().getDereference();
     tmp2.setDereference(((BinaryIdentifier) name).getDereference() + deref);*/
     return tmp1.getType(pLocalInfo);
@@ -116,6 +116,14 @@ public class ConstantIdentifier implements AbstractIdentifier {
     dereference = pD;
   }
 
+  @Override
+  public ConstantIdentifier withDereference(int pD) {
+    if (pD == dereference) {
+      return this;
+    }
+    return new ConstantIdentifier(name, pD);
+  }
+
   @Override
   public AbstractIdentifier containsIn(Collection<? extends AbstractIdentifier> pSet) {
     if (pSet.contains(this)) {
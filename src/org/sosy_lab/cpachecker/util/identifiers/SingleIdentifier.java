@@ -36,6 +36,8 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
   protected String name;
   protected CType type;
   protected int dereference;
+  //String representation of the type is used in equals and hashCode, so it is computed only once
+  private String typeString;
 
   public SingleIdentifier(String nm, CType tp, int deref) {
     name = nm;
@@ -56,6 +58,13 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
     return name;
   }
 
+  private String getTypeString() {
+    if (typeString == null && type != null) {
+      typeString = type.toASTString("");
+    }
+    return typeString;
+  }
+
   @Override
   public boolean isPointer() {
     if (dereference > 0) {
@@ -73,7 +82,7 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
     int result = 1;
     result = prime * result + dereference;
     result = prime * result + ((name == null) ? 0 : name.hashCode());
-    result = prime * result + ((type == null) ? 0 : type.toASTString("").hashCode());
+    result = prime * result + ((type == null) ? 0 : getTypeString().hashCode());
     return result;
   }
 
@@ -103,7 +112,7 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
       if (other.type != null) {
         return false;
       }
-    } else if (!type.toASTString("").equals(other.type.toASTString(""))) {
+    } else if (!getTypeString().equals(other.getTypeString())) {
       return false;
     }
     return true;
@@ -126,6 +135,16 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
     dereference = pD;
   }
 
+  @Override
+  public SingleIdentifier withDereference(int pD) {
+    if (pD == dereference) {
+      return this;
+    }
+    SingleIdentifier result = clone();
+    result.setDereference(pD);
+    return result;
+  }
+
   @Override
   public AbstractIdentifier containsIn(Collection<? extends AbstractIdentifier> set) {
     GeneralIdentifier generalId = this.getGeneralId();
@@ -147,7 +166,7 @@ public abstract class SingleIdentifier implements AbstractIdentifier{
       }
       if (this.type != null) {
         if (((SingleIdentifier)pO).type != null) {
-          result = this.type.toASTString("").compareTo(((SingleIdentifier)pO).type.toASTString(""));
+          result = this.getTypeString().compareTo(((SingleIdentifier)pO).getTypeString());
           if (result != 0) {
             return result;
           }
@@ -65,6 +65,14 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * symbolic formula. It is therefore the bridge between the abstract and the
  * symbolic "worlds".
  * It is also responsible for the creation of {@link AbstractionPredicate}s.
+ *
+ * This class is not thread-safe in general, because it builds formulas
+ * with the formula manager of the solver, which may be used only by one thread at a time.
+ * Only the creation of predicates is atomic: {@link #makePredicate(BooleanFormula)}
+ * holds the lock of the region manager, which also guards the predicate ordering,
+ * and the mappings may be read concurrently.
+ * So several threads may create predicates at the same time, if the region manager is thread-safe
+ * (cf. option bdd.synchronize) and no other thread uses the formula manager meanwhile.
  */
 @Options(prefix = "cpa.predicate")
 public final class AbstractionManager {
@@ -73,16 +81,17 @@ public final class AbstractionManager {
   private final FormulaManagerView fmgr;
   private final Solver solver;
   // Here we keep the mapping abstract predicate variable -> predicate
-  private final Map<Region, AbstractionPredicate> absVarToPredicate = Maps.newHashMap();
+  private final Map<Region, AbstractionPredicate> absVarToPredicate = Maps.newConcurrentMap();
   // and the mapping symbolic variable -> predicate
-  private final Map<BooleanFormula, AbstractionPredicate> symbVarToPredicate = Maps.newHashMap();
+  private final Map<BooleanFormula, AbstractionPredicate> symbVarToPredicate = Maps.newConcurrentMap();
   // and the mapping atom -> predicate
-  private final Map<BooleanFormula, AbstractionPredicate> atomToPredicate = Maps.newHashMap();
+  private final Map<BooleanFormula, AbstractionPredicate> atomToPredicate = Maps.newConcurrentMap();
 
   // Properties for BDD variable ordering:
   @Option(secure = true, name = "abs.predicateOrdering.method",
       description = "Predicate ordering")
   private PredicateOrderingStrategy varOrderMethod = PredicateOrderingStrategy.CHRONOLOGICAL;
+  // the predicate ordering is guarded by the lock of the region manager
   // mapping predicate variable -> partition containing predicates with this predicate variable
   private final HashMap<String, PredicatePartition> predVarToPartition = new HashMap<>();
   // and mapping partition ID -> set of predicate variables covered by partition
@@ -96,7 +105,7 @@ public final class AbstractionManager {
   private final Map<Region, BooleanFormula> toConcreteCache;
 
   @SuppressFBWarnings(value = "VO_VOLATILE_INCREMENT",
-      justification = "Class is not thread-safe, but concurrent read access to this variable is needed for the MBean")
+      justification = "Updates are done only under the lock of the region manager, concurrent read access is needed for the MBean")
   private volatile int numberOfPredicates = 0;
 
   @Option(secure = true, name = "abs.useCache", description = "use caching of region to formula conversions")
@@ -118,7 +127,7 @@ public final class AbstractionManager {
     }
 
     if (useCache) {
-      toConcreteCache = new HashMap<>();
+      toConcreteCache = Maps.newConcurrentMap();
     } else {
       toConcreteCache = null;
     }
@@ -151,13 +160,23 @@ public final class AbstractionManager {
   }
 
   /**
-   * creates a Predicate from the Boolean symbolic variable (var) and the atom that defines it
+   * creates a Predicate from the Boolean symbolic variable (var) and the atom that defines it.
+   * The predicate variable is created with the formula manager while holding the lock of the region manager.
    */
-  @SuppressWarnings("NonAtomicVolatileUpdate") // no thread-safe anyway
+  @SuppressWarnings("NonAtomicVolatileUpdate") // updated only under the lock
   public AbstractionPredicate makePredicate(BooleanFormula atom) {
     AbstractionPredicate result = atomToPredicate.get(atom);
+    if (result != null) {
+      return result;
+    }
+
+    synchronized (rmgr) {
+      result = atomToPredicate.get(atom);
+      if (result != null) {
+        // created by another thread in the meantime
+        return result;
+      }
 
-    if (result == null) {
       BooleanFormula symbVar = fmgr.createPredicateVariable("PRED" + numberOfPredicates);
       Region absVar = rmgr.createPredicate();
 
@@ -180,9 +199,8 @@ public final class AbstractionManager {
       }
 
       numberOfPredicates++;
+      return result;
     }
-
-    return result;
   }
 
   /**
@@ -240,29 +258,31 @@ public final class AbstractionManager {
    * Reorders the BDD variables.
    */
   public void reorderPredicates() {
-    if (this.varOrderMethod.getIsFrameworkStrategy()) {
-      rmgr.reorder(this.varOrderMethod);
-    } else {
-      ArrayList<Integer> predicateOrdering = new ArrayList<>(numberOfPredicates);
-      if (varOrderMethod.equals(PredicateOrderingStrategy.RANDOMLY)) {
-        predicateOrdering.addAll(randomListOfVarIDs);
-      } else if (multiplePartitions) {
-        HashSet<PredicatePartition> partitions = new HashSet<>(predVarToPartition.values());
-        for (PredicatePartition partition : partitions) {
-          List<AbstractionPredicate> predicates = partition.getPredicates();
+    synchronized (rmgr) {
+      if (this.varOrderMethod.getIsFrameworkStrategy()) {
+        rmgr.reorder(this.varOrderMethod);
+      } else {
+        ArrayList<Integer> predicateOrdering = new ArrayList<>(numberOfPredicates);
+        if (varOrderMethod.equals(PredicateOrderingStrategy.RANDOMLY)) {
+          predicateOrdering.addAll(randomListOfVarIDs);
+        } else if (multiplePartitions) {
+          HashSet<PredicatePartition> partitions = new HashSet<>(predVarToPartition.values());
+          for (PredicatePartition partition : partitions) {
+            List<AbstractionPredicate> predicates = partition.getPredicates();
 
+            for (AbstractionPredicate predicate : predicates) {
+              predicateOrdering.add(predicate.getVariableNumber());
+            }
+          }
+        } else {
+          List<AbstractionPredicate> predicates = partition.getPredicates();
           for (AbstractionPredicate predicate : predicates) {
             predicateOrdering.add(predicate.getVariableNumber());
           }
         }
-      } else {
-        List<AbstractionPredicate> predicates = partition.getPredicates();
-        for (AbstractionPredicate predicate : predicates) {
-          predicateOrdering.add(predicate.getVariableNumber());
-        }
-      }
 
-      rmgr.setVarOrder(predicateOrdering);
+        rmgr.setVarOrder(predicateOrdering);
+      }
     }
   }
 
@@ -452,9 +472,6 @@ public final class AbstractionManager {
 
           @Override
           public Region apply(BooleanFormula pInput) {
-            if (atomToPredicate.containsKey(pInput)) {
-            return atomToPredicate.get(pInput).getAbstractVariable();
-            }
             return makePredicate(pInput).getAbstractVariable();
           }
         });
@@ -488,7 +505,6 @@ public final class AbstractionManager {
 
     @Override
     public String getPredicates() {
-      // TODO this may run into a ConcurrentModificationException
       return Joiner.on('\n').join(absVarToPredicate.values());
     }
   }
@@ -0,0 +1,128 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.ShutdownNotifier;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.util.predicates.bdd.BDDManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.IntegerFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.smt.Solver;
+import org.sosy_lab.solver.api.BooleanFormula;
+import org.sosy_lab.solver.api.NumeralFormula.IntegerFormula;
+
+public class AbstractionManagerTest {
+
+  private static final int THREADS = 4;
+  private static final int ATOMS = 50;
+
+  private Solver solver;
+  private AbstractionManager amgr;
+  private ExecutorService executor;
+  private final List<BooleanFormula> atoms = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration config = Configuration.builder().setOption("bdd.synchronize", "true").build();
+    LogManager logger = TestLogManager.getInstance();
+    solver = Solver.create(config, logger, ShutdownNotifier.createDummy());
+    FormulaManagerView fmgr = solver.getFormulaManager();
+    amgr = new AbstractionManager(new BDDManagerFactory(config, logger).createRegionManager(),
+        fmgr, config, logger, solver);
+    executor = Executors.newFixedThreadPool(THREADS);
+
+    // the formula manager is used only by this thread
+    IntegerFormulaManagerView imgr = fmgr.getIntegerFormulaManager();
+    IntegerFormula x = imgr.makeVariable("x");
+    for (int i = 0; i < ATOMS; i++) {
+      atoms.add(imgr.equal(x, imgr.makeNumber(i)));
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    solver.close();
+  }
+
+  @Test
+  public void testConcurrentMakePredicate() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<List<AbstractionPredicate>>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final int offset = t * ATOMS / THREADS;
+      results.add(executor.submit(new Callable<List<AbstractionPredicate>>() {
+        @Override
+        public List<AbstractionPredicate> call() throws Exception {
+          start.await();
+          // every thread starts with other atoms, so the predicates are created by different threads
+          AbstractionPredicate[] created = new AbstractionPredicate[ATOMS];
+          for (int i = 0; i < ATOMS; i++) {
+            int index = (offset + i) % ATOMS;
+            created[index] = amgr.makePredicate(atoms.get(index));
+          }
+          return Arrays.asList(created);
+        }
+      }));
+    }
+    start.countDown();
+
+    List<AbstractionPredicate> first = results.get(0).get();
+    for (Future<List<AbstractionPredicate>> result : results) {
+      // every atom has exactly one predicate
+      List<AbstractionPredicate> predicates = result.get();
+      for (int i = 0; i < ATOMS; i++) {
+        assertThat(predicates.get(i)).isSameAs(first.get(i));
+      }
+    }
+    assertThat(amgr.getNumberOfPredicates()).isEqualTo(ATOMS);
+
+    Set<Integer> variableNumbers = new HashSet<>();
+    for (int i = 0; i < ATOMS; i++) {
+      AbstractionPredicate predicate = first.get(i);
+      assertThat(predicate.getSymbolicAtom()).isEqualTo(atoms.get(i));
+      assertThat(amgr.getPredicate(predicate.getSymbolicVariable())).isSameAs(predicate);
+      variableNumbers.add(predicate.getVariableNumber());
+    }
+    assertThat(variableNumbers).hasSize(ATOMS);
+  }
+}
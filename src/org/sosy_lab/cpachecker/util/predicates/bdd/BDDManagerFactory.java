@@ -29,6 +29,7 @@ import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.util.predicates.regions.RegionManager;
+import org.sosy_lab.cpachecker.util.predicates.regions.SynchronizedRegionManager;
 
 /**
  * Factory for creating a RegionManager for one of the available BDD packages
@@ -51,6 +52,12 @@ public class BDDManagerFactory {
   // documentation of the packages can be found at source of BDDFactory.init()
   private String bddPackage = "JAVA";
 
+  @Option(secure=true, name="synchronize",
+      description = "Make the region manager safe for the use by several analysis threads"
+      + " (e.g., parallel abstraction or refinement). All operations are serialized,"
+      + " so the threads share one variable ordering and one node table.")
+  private boolean synchronize = false;
+
   private final Configuration config;
   private final LogManager logger;
 
@@ -62,10 +69,15 @@ public class BDDManagerFactory {
   }
 
   public RegionManager createRegionManager() throws InvalidConfigurationException {
+    RegionManager manager;
     if (bddPackage.equals("SYLVAN")) {
-      return new SylvanBDDRegionManager(config, logger);
+      manager = new SylvanBDDRegionManager(config, logger);
     } else {
-      return new JavaBDDRegionManager(bddPackage, config, logger);
+      manager = new JavaBDDRegionManager(bddPackage, config, logger);
+    }
+    if (synchronize) {
+      manager = new SynchronizedRegionManager(manager);
     }
+    return manager;
   }
 }
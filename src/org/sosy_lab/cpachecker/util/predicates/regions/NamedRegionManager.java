@@ -44,10 +44,13 @@ import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
 import com.google.common.base.Function;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * This class provides a RegionManager which additionally keeps track of a name
  * for each predicate, and can provide a nice String representation of a BDD.
+ * The names are guarded by this object, so the manager may be used by several threads,
+ * if the delegate is thread-safe.
  */
 public class NamedRegionManager implements RegionManager {
 
@@ -72,7 +75,7 @@ public class NamedRegionManager implements RegionManager {
    * @param pName An arbitary name for a predicate.
    * @return A region representing a predicate
    */
-  public Region createPredicate(String pName) {
+  public synchronized Region createPredicate(String pName) {
     Region result = regionMap.get(pName);
     if (result == null) {
       result = delegate.createPredicate();
@@ -82,7 +85,7 @@ public class NamedRegionManager implements RegionManager {
   }
 
   @Override
-  public Region createPredicate() {
+  public synchronized Region createPredicate() {
     return createPredicate(ANONYMOUS_PREDICATE + anonymousPredicateCounter++);
   }
 
@@ -93,7 +96,9 @@ public class NamedRegionManager implements RegionManager {
     return new AbstractAppender() {
       @Override
       public void appendTo(Appendable pAppendable) throws IOException {
-        dumpRegion(r, pAppendable);
+        synchronized (NamedRegionManager.this) {
+          dumpRegion(r, pAppendable);
+        }
       }
     };
   }
@@ -148,7 +153,7 @@ public class NamedRegionManager implements RegionManager {
   /**
    * Returns a representation of a region in dot-format (graphviz).
    */
-  public String regionToDot(Region r) {
+  public synchronized String regionToDot(Region r) {
     nodeCounter = 2; // counter for nodes, values 0 and 1 are used for nodes FALSE and TRUE
     Map<Region, Integer> cache = new HashMap<>(); // map for same regions
     StringBuilder str = new StringBuilder("digraph G {\n");
@@ -272,7 +277,7 @@ public class NamedRegionManager implements RegionManager {
   }
 
   @Override
-  public void printStatistics(PrintStream out) {
+  public synchronized void printStatistics(PrintStream out) {
     out.println("Number of named predicates:          " + (regionMap.size() - anonymousPredicateCounter));
     delegate.printStatistics(out);
   }
@@ -282,8 +287,11 @@ public class NamedRegionManager implements RegionManager {
     return delegate.getVersion();
   }
 
-  public Set<String> getPredicates() {
-    return this.regionMap.keySet();
+  /**
+   * @return a copy of the names of the predicates
+   */
+  public synchronized Set<String> getPredicates() {
+    return ImmutableSet.copyOf(regionMap.keySet());
   }
 
   @Override
@@ -0,0 +1,210 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.regions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.sosy_lab.common.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.Triple;
+import org.sosy_lab.cpachecker.util.predicates.PredicateOrderingStrategy;
+import org.sosy_lab.cpachecker.util.predicates.smt.FormulaManagerView;
+import org.sosy_lab.solver.SolverException;
+import org.sosy_lab.solver.api.BooleanFormula;
+
+import com.google.common.base.Function;
+
+/**
+ * A RegionManager which makes another one safe for the use by several threads.
+ *
+ * The BDD packages keep a single node table and global operation caches,
+ * and they also free unreferenced nodes from within the operations,
+ * so all calls to the delegate (including the calls of a {@link RegionBuilder})
+ * are serialized on this object.
+ * Code which has to make several operations atomically (e.g., creating a predicate
+ * and registering it) may synchronize on this object as well.
+ */
+public class SynchronizedRegionManager implements RegionManager {
+
+  private final RegionManager delegate;
+
+  public SynchronizedRegionManager(RegionManager pDelegate) {
+    delegate = checkNotNull(pDelegate);
+  }
+
+  @Override
+  public synchronized RegionBuilder builder(ShutdownNotifier pShutdownNotifier) {
+    return new SynchronizedRegionBuilder(delegate.builder(pShutdownNotifier));
+  }
+
+  @Override
+  public synchronized Region makeTrue() {
+    return delegate.makeTrue();
+  }
+
+  @Override
+  public synchronized Region makeFalse() {
+    return delegate.makeFalse();
+  }
+
+  @Override
+  public synchronized Region makeNot(Region pF) {
+    return delegate.makeNot(pF);
+  }
+
+  @Override
+  public synchronized Region makeAnd(Region pF1, Region pF2) {
+    return delegate.makeAnd(pF1, pF2);
+  }
+
+  @Override
+  public synchronized Region makeOr(Region pF1, Region pF2) {
+    return delegate.makeOr(pF1, pF2);
+  }
+
+  @Override
+  public synchronized Region makeEqual(Region pF1, Region pF2) {
+    return delegate.makeEqual(pF1, pF2);
+  }
+
+  @Override
+  public synchronized Region makeUnequal(Region pF1, Region pF2) {
+    return delegate.makeUnequal(pF1, pF2);
+  }
+
+  @Override
+  public synchronized Region makeIte(Region pF1, Region pF2, Region pF3) {
+    return delegate.makeIte(pF1, pF2, pF3);
+  }
+
+  @Override
+  public synchronized Region makeExists(Region pF1, Region... pF2) {
+    return delegate.makeExists(pF1, pF2);
+  }
+
+  @Override
+  public synchronized boolean entails(Region pF1, Region pF2) throws SolverException, InterruptedException {
+    return delegate.entails(pF1, pF2);
+  }
+
+  @Override
+  public synchronized Region createPredicate() {
+    return delegate.createPredicate();
+  }
+
+  @Override
+  public synchronized Set<Region> extractPredicates(Region pF) {
+    return delegate.extractPredicates(pF);
+  }
+
+  @Override
+  public synchronized Region fromFormula(BooleanFormula pF, FormulaManagerView pFmgr,
+      Function<BooleanFormula, Region> pAtomToRegion) {
+    // pAtomToRegion may create new predicates, the lock is reentrant
+    return delegate.fromFormula(pF, pFmgr, pAtomToRegion);
+  }
+
+  @Override
+  public synchronized Triple<Region, Region, Region> getIfThenElse(Region pF) {
+    return delegate.getIfThenElse(pF);
+  }
+
+  @Override
+  public synchronized void printStatistics(PrintStream pOut) {
+    delegate.printStatistics(pOut);
+  }
+
+  @Override
+  public String getVersion() {
+    return delegate.getVersion() + " (synchronized)";
+  }
+
+  @Override
+  public synchronized void setVarOrder(ArrayList<Integer> pOrder) {
+    delegate.setVarOrder(pOrder);
+  }
+
+  @Override
+  public synchronized void reorder(PredicateOrderingStrategy pStrategy) {
+    delegate.reorder(pStrategy);
+  }
+
+  /**
+   * The builders of the BDD packages operate on the same node table,
+   * thus they use the lock of the region manager.
+   */
+  private class SynchronizedRegionBuilder implements RegionBuilder {
+
+    private final RegionBuilder builder;
+
+    private SynchronizedRegionBuilder(RegionBuilder pBuilder) {
+      builder = pBuilder;
+    }
+
+    @Override
+    public void startNewConjunction() {
+      synchronized (SynchronizedRegionManager.this) {
+        builder.startNewConjunction();
+      }
+    }
+
+    @Override
+    public void addPositiveRegion(Region pR) {
+      synchronized (SynchronizedRegionManager.this) {
+        builder.addPositiveRegion(pR);
+      }
+    }
+
+    @Override
+    public void addNegativeRegion(Region pR) {
+      synchronized (SynchronizedRegionManager.this) {
+        builder.addNegativeRegion(pR);
+      }
+    }
+
+    @Override
+    public void finishConjunction() {
+      synchronized (SynchronizedRegionManager.this) {
+        builder.finishConjunction();
+      }
+    }
+
+    @Override
+    public Region getResult() throws InterruptedException {
+      synchronized (SynchronizedRegionManager.this) {
+        return builder.getResult();
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (SynchronizedRegionManager.this) {
+        builder.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2016  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.regions;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.util.predicates.bdd.BDDManagerFactory;
+
+public class SynchronizedRegionManagerTest {
+
+  private static final int THREADS = 4;
+  private static final int PREDICATES = 16;
+  private static final int ROUNDS = 200;
+
+  private RegionManager rmgr;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration config = Configuration.builder().setOption("bdd.synchronize", "true").build();
+    rmgr = new BDDManagerFactory(config, TestLogManager.getInstance()).createRegionManager();
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCreatedByFactory() {
+    assertThat(rmgr).isInstanceOf(SynchronizedRegionManager.class);
+  }
+
+  @Test
+  public void testConcurrentOperations() throws Exception {
+    final List<Region> predicates = new ArrayList<>();
+    for (int i = 0; i < PREDICATES; i++) {
+      predicates.add(rmgr.createPredicate());
+    }
+    Region expected = buildRegion(predicates);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<Region>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      results.add(executor.submit(new Callable<Region>() {
+        @Override
+        public Region call() throws Exception {
+          start.await();
+          Region result = null;
+          for (int round = 0; round < ROUNDS; round++) {
+            // the intermediate results become garbage, which is freed during the operations
+            result = buildRegion(predicates);
+          }
+          return result;
+        }
+      }));
+    }
+    start.countDown();
+
+    for (Future<Region> result : results) {
+      assertThat(result.get()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testConcurrentPredicateCreation() throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<List<Region>>> results = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      results.add(executor.submit(new Callable<List<Region>>() {
+        @Override
+        public List<Region> call() throws Exception {
+          start.await();
+          List<Region> created = new ArrayList<>();
+          for (int i = 0; i < PREDICATES; i++) {
+            created.add(rmgr.createPredicate());
+          }
+          return created;
+        }
+      }));
+    }
+    start.countDown();
+
+    Set<Region> all = new HashSet<>();
+    for (Future<List<Region>> result : results) {
+      all.addAll(result.get());
+    }
+    assertThat(all).hasSize(THREADS * PREDICATES);
+  }
+
+  /** (p0 & !p1) | (p1 & !p2) | ... */
+  private Region buildRegion(List<Region> predicates) {
+    Region result = rmgr.makeFalse();
+    for (int i = 0; i + 1 < predicates.size(); i++) {
+      Region conjunction = rmgr.makeAnd(predicates.get(i), rmgr.makeNot(predicates.get(i + 1)));
+      result = rmgr.makeOr(result, conjunction);
+    }
+    return result;
+  }
+}
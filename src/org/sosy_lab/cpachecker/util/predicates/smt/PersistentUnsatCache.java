@@ -0,0 +1,152 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.smt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.log.LogManager;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * Cache for the results of satisfiability checks, which is stored on disk
+ * and reused by later runs.
+ * A query is identified by the SHA-256 hash of its SMT-LIB2 representation.
+ * The file is only appended, each line contains the hash and the result.
+ * Lines are appended under a file lock, so several processes may share the same file.
+ * File locks are held by the whole JVM, so the instances within one JVM are additionally
+ * serialized by a common monitor.
+ */
+final class PersistentUnsatCache implements AutoCloseable {
+
+  private static final int HASH_LENGTH = 64;
+
+  // file locks of one JVM must not overlap, even if they are taken by different channels
+  private static final Object FILE_LOCK_MONITOR = new Object();
+
+  private final LogManager logger;
+  private final FileChannel channel;
+  private final Map<HashCode, Boolean> results = new HashMap<>();
+
+  PersistentUnsatCache(Path pFile, LogManager pLogger) throws IOException {
+    logger = pLogger;
+    channel = FileChannel.open(pFile.toFile().toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      synchronized (FILE_LOCK_MONITOR) {
+        try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+          load();
+        }
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    } catch (OverlappingFileLockException e) {
+      channel.close();
+      throw new IOException("File " + pFile + " is locked by another channel of this process", e);
+    }
+    logger.log(Level.FINE, "Loaded", results.size(), "results of satisfiability checks from", pFile);
+  }
+
+  private void load() throws IOException {
+    channel.position(0);
+    //The stream must not be closed, it would close the channel
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      //The last line may be incomplete, if a process was killed during writing
+      if (line.length() == HASH_LENGTH + 2 && line.charAt(HASH_LENGTH) == ' ') {
+        char result = line.charAt(HASH_LENGTH + 1);
+        if (result == '0' || result == '1') {
+          results.put(HashCode.fromString(line.substring(0, HASH_LENGTH)), result == '1');
+        }
+      }
+    }
+  }
+
+  /**
+   * @param query the SMT-LIB2 representation of the checked formula
+   */
+  static HashCode computeKey(String query) {
+    return Hashing.sha256().hashString(query, StandardCharsets.UTF_8);
+  }
+
+  @Nullable Boolean get(HashCode key) {
+    return results.get(key);
+  }
+
+  void put(HashCode key, boolean unsat) {
+    if (results.put(key, unsat) != null) {
+      return;
+    }
+    String entry = key + " " + (unsat ? '1' : '0') + "\n";
+    synchronized (FILE_LOCK_MONITOR) {
+      //The lock prevents interleaving with the lines of other processes,
+      //the end of file is read under the lock, as other processes may have appended lines
+      try (FileLock lock = channel.lock()) {
+        long position = channel.size();
+        if (!endsWithNewLine(position)) {
+          //an incomplete line of a killed process is terminated, so it does not spoil the new one
+          entry = "\n" + entry;
+        }
+        ByteBuffer line = ByteBuffer.wrap(entry.getBytes(StandardCharsets.US_ASCII));
+        while (line.hasRemaining()) {
+          position += channel.write(line, position);
+        }
+      } catch (IOException | OverlappingFileLockException e) {
+        logger.logUserException(Level.WARNING, e, "Could not store the result of satisfiability check");
+      }
+    }
+  }
+
+  private boolean endsWithNewLine(long size) throws IOException {
+    if (size == 0) {
+      return true;
+    }
+    ByteBuffer last = ByteBuffer.allocate(1);
+    return channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.smt;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Files.DeleteOnCloseFile;
+import org.sosy_lab.common.log.TestLogManager;
+
+import com.google.common.hash.HashCode;
+
+public class PersistentUnsatCacheTest {
+
+  private final HashCode unsatKey = PersistentUnsatCache.computeKey("(assert false)");
+  private final HashCode satKey = PersistentUnsatCache.computeKey("(assert true)");
+
+  @Test
+  public void testResultsAfterReopen() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("unsat", ".cache")) {
+      try (PersistentUnsatCache cache = open(file)) {
+        assertThat(cache.get(unsatKey)).isNull();
+        cache.put(unsatKey, true);
+        cache.put(satKey, false);
+        assertThat(cache.get(unsatKey)).isTrue();
+      }
+
+      try (PersistentUnsatCache cache = open(file)) {
+        assertThat(cache.get(unsatKey)).isTrue();
+        assertThat(cache.get(satKey)).isFalse();
+        assertThat(cache.get(PersistentUnsatCache.computeKey("(assert (= x 1))"))).isNull();
+      }
+    }
+  }
+
+  @Test
+  public void testSeveralInstancesOfOneProcess() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("unsat", ".cache")) {
+      //the solvers of parallel abstractions share the same file
+      try (PersistentUnsatCache first = open(file);
+           PersistentUnsatCache second = open(file)) {
+        first.put(unsatKey, true);
+        second.put(satKey, false);
+      }
+
+      try (PersistentUnsatCache cache = open(file)) {
+        assertThat(cache.get(unsatKey)).isTrue();
+        assertThat(cache.get(satKey)).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void testIncompleteLine() throws IOException {
+    try (DeleteOnCloseFile file = Files.createTempFile("unsat", ".cache")) {
+      try (PersistentUnsatCache cache = open(file)) {
+        cache.put(unsatKey, true);
+      }
+      //a process was killed during writing the next line
+      java.nio.file.Files.write(file.toPath().toFile().toPath(),
+          satKey.toString().substring(0, 10).getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+
+      try (PersistentUnsatCache cache = open(file)) {
+        assertThat(cache.get(unsatKey)).isTrue();
+        assertThat(cache.get(satKey)).isNull();
+        cache.put(satKey, false);
+      }
+
+      try (PersistentUnsatCache cache = open(file)) {
+        assertThat(cache.get(unsatKey)).isTrue();
+        assertThat(cache.get(satKey)).isFalse();
+      }
+    }
+  }
+
+  private static PersistentUnsatCache open(DeleteOnCloseFile file) throws IOException {
+    return new PersistentUnsatCache(file.toPath(), TestLogManager.getInstance());
+  }
+}
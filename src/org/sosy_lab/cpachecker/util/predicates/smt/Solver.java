@@ -23,17 +23,21 @@
  */
 package org.sosy_lab.cpachecker.util.predicates.smt;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 
 import javax.annotation.Nullable;
 
 import org.sosy_lab.common.ShutdownNotifier;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.io.Path;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.util.predicates.interpolation.SeparateInterpolatingProverEnvironment;
@@ -57,6 +61,7 @@ import org.sosy_lab.solver.api.SolverContext.ProverOptions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Verify;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -89,6 +94,12 @@ public final class Solver implements AutoCloseable {
   @SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_OF_NULL_VALUE")
   private @Nullable Solvers interpolationSolver = null;
 
+  @Option(secure = true, name = "persistentCache",
+      description = "File with the results of satisfiability checks, which are reused by later runs. "
+          + "The file is extended with new results and may be shared by concurrent processes.")
+  @FileOption(FileOption.Type.OPTIONAL_INPUT_FILE)
+  private @Nullable Path persistentCacheFile = null;
+
   private final UFCheckingProverOptions ufCheckingProverOptions;
 
   private final FormulaManagerView fmgr;
@@ -98,6 +109,7 @@ public final class Solver implements AutoCloseable {
   private final SolverContext interpolatingContext;
 
   private final Map<BooleanFormula, Boolean> unsatCache = Maps.newHashMap();
+  private final @Nullable PersistentUnsatCache persistentUnsatCache;
 
   private final LogManager logger;
 
@@ -106,6 +118,7 @@ public final class Solver implements AutoCloseable {
   public int satChecks = 0;
   public int trivialSatChecks = 0;
   public int cachedSatChecks = 0;
+  public int persistentCachedSatChecks = 0;
 
   /**
    * Please use {@link #create(Configuration, LogManager, ShutdownNotifier)} in normal code.
@@ -150,6 +163,16 @@ public final class Solver implements AutoCloseable {
     } else {
       ufCheckingProverOptions = null;
     }
+
+    PersistentUnsatCache cache = null;
+    if (persistentCacheFile != null) {
+      try {
+        cache = new PersistentUnsatCache(persistentCacheFile, logger);
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not open the persistent cache of satisfiability checks");
+      }
+    }
+    persistentUnsatCache = cache;
   }
 
   /**
@@ -255,11 +278,25 @@ public final class Solver implements AutoCloseable {
       return result;
     }
 
+    HashCode persistentKey = null;
+    if (persistentUnsatCache != null) {
+      persistentKey = PersistentUnsatCache.computeKey(fmgr.dumpFormula(f).toString());
+      result = persistentUnsatCache.get(persistentKey);
+      if (result != null) {
+        persistentCachedSatChecks++;
+        unsatCache.put(f, result);
+        return result;
+      }
+    }
+
     solverTime.start();
     try {
       result = isUnsatUncached(f);
 
       unsatCache.put(f, result);
+      if (persistentUnsatCache != null) {
+        persistentUnsatCache.put(persistentKey, result);
+      }
       return result;
 
     } finally {
@@ -343,6 +380,13 @@ public final class Solver implements AutoCloseable {
     // such that no exception gets lost and both managers get closed.
     // Taken from https://stackoverflow.com/questions/24705055/wrapping-multiple-autocloseables
     // Guava has Closer, but it does not yet support AutoCloseables.
+    if (persistentUnsatCache != null) {
+      try {
+        persistentUnsatCache.close();
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not close the persistent cache of satisfiability checks");
+      }
+    }
     Throwable t = null;
     try {
       solvingContext.close();
@@ -365,6 +409,13 @@ public final class Solver implements AutoCloseable {
     }
   }
 
+  /**
+   * @return the SMT solver, which is used for all queries except interpolation
+   */
+  public Solvers getSolverName() {
+    return solver;
+  }
+
   public String getVersion() {
     return solvingContext.getVersion();
   }